@@ -0,0 +1,196 @@
+import benchmarks.SoakWorkload;
+import javafx.scene.chart.XYChart;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.prefs.Preferences;
+
+/**
+ * Calls into the application for the soak harness, see {@link SoakWorkload}. The thread of the
+ * harness stands in for the FX thread: the ticks of the session timer queue up for it and are run
+ * when it reads the elapsed time label.
+ */
+public class SchedulerSoakWorkload implements SoakWorkload {
+    private final ResourceBundle languageData = ResourceBundle.getBundle("language", new Locale("en"));
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "soak-background");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final DurationFormatter elapsed = new DurationFormatter("Elapsed session time: ");
+    private final ConcurrentLinkedQueue<Runnable> uiQueue = new ConcurrentLinkedQueue<>();
+    private final SessionTimer timer = new SessionTimer(scheduler, uiQueue::add);
+    private final StringBuilder labelText = new StringBuilder(64);
+    private final XYChart.Series<String, Number> series = new XYChart.Series<>();
+    private SessionTracker tracker;
+    private SessionJournal journal;
+    private RollupIndex rollups;
+    private SessionStatistics statistics;
+    private ReportGenerator reports;
+    private ChartModel chart;
+    private PreferenceCache preferences;
+    private LegacyPreferences legacyPreferences;
+    private ResultsWatcher results;
+
+    @Override
+    public void open(Path dir, Clock clock, Preferences node) throws IOException {
+        tracker = new SessionTracker(dir, clock);
+        journal = tracker.journal(SessionTracker.LOCAL_USER);
+        rollups = tracker.rollups(SessionTracker.LOCAL_USER);
+        statistics = tracker.statistics(SessionTracker.LOCAL_USER);
+        reports = tracker.reports(SessionTracker.LOCAL_USER);
+        chart = new ChartModel(series, rollups, tracker.history(SessionTracker.LOCAL_USER), languageData, clock);
+        try {
+            preferences = PreferenceCache.open(node, scheduler, PreferenceCache.DEFAULT_FLUSH_MILLIS);
+        } catch (java.util.prefs.BackingStoreException e) {
+            throw new IOException(e);
+        }
+        legacyPreferences = new LegacyPreferences(preferences);
+        results = ResultsWatcher.open(dir.resolve("ingested.index"), journal, rollups, Runnable::run, () -> { });
+        // ticks come on the real clock, the days the counter has been running on the synthetic one
+        LocalDate first = LocalDate.now(clock);
+        timer.start(seconds -> elapsed.update(ChronoUnit.DAYS.between(first, LocalDate.now(clock)) * 86_400L
+                + seconds));
+    }
+
+    @Override
+    public void seedLegacyPreferences(LocalDate from, LocalDate to) {
+        for (LocalDate day = from; day.isBefore(to); day = day.plusDays(1)) {
+            preferences.putInt(LegacyPreferences.SESSIONS_KEY + day + ")", 2);
+            preferences.put(LegacyPreferences.LAST_SESSION_KEY + day + ")", "PT20M");
+            preferences.put(LegacyPreferences.LONGEST_SESSION_KEY + day + ")", "PT40M");
+            preferences.put(LegacyPreferences.TOTAL_TIME_TODAY_KEY + day + ")", "PT1H");
+        }
+    }
+
+    @Override
+    public int compactPreferences(LocalDate today) {
+        legacyPreferences.compact(today, LegacyPreferences.DEFAULT_RETENTION_DAYS);
+        return preferences.keys().length;
+    }
+
+    @Override
+    public void startSession() throws IOException {
+        tracker.start(SessionTracker.LOCAL_USER);
+    }
+
+    @Override
+    public long stopSession() throws IOException {
+        return tracker.stop(SessionTracker.LOCAL_USER);
+    }
+
+    @Override
+    public void appendSession(long startMillis, long endMillis, int epochDay) throws IOException {
+        journal.appendSession(startMillis, endMillis, epochDay);
+    }
+
+    @Override
+    public void clearDay(int epochDay) throws IOException {
+        tracker.clearDay(SessionTracker.LOCAL_USER, epochDay);
+    }
+
+    @Override
+    public void clearAll() throws IOException {
+        tracker.clearAll(SessionTracker.LOCAL_USER);
+    }
+
+    @Override
+    public CharSequence elapsedText() {
+        for (Runnable tick = uiQueue.poll(); tick != null; tick = uiQueue.poll()) {
+            tick.run();
+        }
+        return elapsed.getText();
+    }
+
+    @Override
+    public void refreshLabels(int epochDay) {
+        labelText.setLength(0);
+        labelText.append(languageData.getString("2")).append(rollups.sessions(epochDay));
+        DurationFormatter.appendTo(labelText.append(languageData.getString("3")), rollups.lastSession(epochDay) / 1000);
+        DurationFormatter.appendTo(labelText.append(languageData.getString("4")), rollups.longestSession(epochDay) / 1000);
+        DurationFormatter.appendTo(labelText.append(languageData.getString("5")), rollups.dayTotal(epochDay) / 1000);
+        DurationFormatter.appendTo(labelText.append(languageData.getString("6")), rollups.weekTotal(epochDay) / 1000);
+        labelText.append(languageData.getString("30"));
+        DurationFormatter.appendTo(labelText, statistics.percentile(50) / 1000).append(" / ");
+        DurationFormatter.appendTo(labelText, statistics.percentile(90) / 1000).append(" / ");
+        DurationFormatter.appendTo(labelText, statistics.percentile(99) / 1000);
+        labelText.append(languageData.getString("31")).append(statistics.currentStreak(epochDay))
+                .append(" / ").append(statistics.longestStreak());
+    }
+
+    @Override
+    public int refreshChart(String view) {
+        chart.show(ChartModel.View.valueOf(view));
+        return series.getData().size();
+    }
+
+    @Override
+    public int maxChartBars() {
+        return ChartModel.MAX_BARS;
+    }
+
+    @Override
+    public void report(int fromEpochDay, int toEpochDay, int todayEpochDay) {
+        reports.report(fromEpochDay, toEpochDay, todayEpochDay).weeklyTrendMillis();
+    }
+
+    @Override
+    public void saveDay(Path exports, int epochDay) throws IOException {
+        String data = languageData.getString("2") + rollups.sessions(epochDay) + "\n" +
+                languageData.getString("3") + Duration.ofMillis(rollups.lastSession(epochDay)) + "\n" +
+                languageData.getString("4") + Duration.ofMillis(rollups.longestSession(epochDay)) + "\n" +
+                languageData.getString("5") + Duration.ofMillis(rollups.dayTotal(epochDay)) + "\n" +
+                languageData.getString("6") + Duration.ofMillis(rollups.weekTotal(epochDay)) + "\n";
+        Files.writeString(exports.resolve(LocalDate.ofEpochDay(epochDay) + ".txt"), data, Charset.defaultCharset());
+    }
+
+    @Override
+    public int loadDirectory(Path exports) throws Exception {
+        List<String> errors = new ArrayList<>();
+        int days = results.ingest(exports, true, new BulkImporter(BulkImporter.DEFAULT_PARALLELISM), (done, total) -> { },
+                errors);
+        if (!errors.isEmpty()) {
+            throw new IOException(errors.size() + " file(s) could not be read: " + errors.get(0));
+        }
+        return days;
+    }
+
+    @Override
+    public void exportHistory(Path file) throws Exception {
+        new HistoryExporter(HistoryExporter.Format.of(file)).export(journal, file, (done, total) -> { }).get();
+    }
+
+    @Override
+    public void snapshotRoundTrip(Path file) throws IOException {
+        SessionSnapshot.write(journal, file);
+        SessionSnapshot.open(file).restore(journal);
+    }
+
+    @Override
+    public void close() throws IOException {
+        timer.stop();
+        if (results != null) {
+            results.close();
+        }
+        if (preferences != null) {
+            preferences.close();
+        }
+        scheduler.shutdownNow();
+        if (tracker != null) {
+            tracker.close();
+        }
+    }
+}
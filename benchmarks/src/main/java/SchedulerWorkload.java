@@ -0,0 +1,75 @@
+import benchmarks.Workload;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Calls into the application for the benchmarks, see {@link Workload}.
+ */
+public class SchedulerWorkload implements Workload {
+    private SessionTracker tracker;
+    private SessionJournal journal;
+    private RollupIndex rollups;
+    private final long[] dailyTotals = new long[7];
+    private final DurationFormatter elapsed = new DurationFormatter("Elapsed session time: ");
+
+    @Override
+    public CharSequence formatElapsed(long seconds) {
+        elapsed.update(seconds);
+        return elapsed.getText();
+    }
+
+    @Override
+    public double calculateTime(Duration duration) {
+        return Scheduler.calculateTime(duration);
+    }
+
+    @Override
+    public void open(Path dir) throws IOException {
+        tracker = new SessionTracker(dir);
+        journal = tracker.journal(SessionTracker.LOCAL_USER);
+        rollups = tracker.rollups(SessionTracker.LOCAL_USER);
+    }
+
+    @Override
+    public long startAndStopSession() throws IOException {
+        tracker.start(SessionTracker.LOCAL_USER);
+        return tracker.stop(SessionTracker.LOCAL_USER);
+    }
+
+    @Override
+    public void appendSession(long startMillis, long endMillis, int epochDay) throws IOException {
+        journal.appendSession(startMillis, endMillis, epochDay);
+    }
+
+    @Override
+    public void weekChart(int mondayEpochDay, double[] hours) {
+        rollups.dayTotals(mondayEpochDay, dailyTotals);
+        for (int day = 0; day < hours.length; day++) {
+            hours[day] = Scheduler.calculateTime(Duration.ofMillis(dailyTotals[day]));
+        }
+    }
+
+    @Override
+    public int importDirectory(Path dir) throws Exception {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.txt")) {
+            stream.forEach(files::add);
+        }
+        BulkImporter importer = new BulkImporter(BulkImporter.DEFAULT_PARALLELISM);
+        BulkImporter.Result result = importer.parse(files, (done, total) -> { }).get();
+        return result.applyTo(journal, rollups);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (tracker != null) {
+            tracker.close();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Synthetic data directories for the benchmarks.
+ */
+final class Archives {
+    private Archives() {
+    }
+
+    /**
+     * Writes one export per day ending yesterday, in the format of the save button.
+     */
+    static Path dailyExports(int files) throws IOException {
+        Path dir = Files.createTempDirectory("scheduler-archive-" + files + "-");
+        Random random = new Random(files);
+        LocalDate day = LocalDate.now().minusDays(files);
+        for (int i = 0; i < files; i++, day = day.plusDays(1)) {
+            int sessions = 1 + random.nextInt(6);
+            Duration last = Duration.ofSeconds(60 + random.nextInt(3600));
+            Duration longest = last.plusSeconds(random.nextInt(3600));
+            Duration total = longest.plus(last).plusSeconds((long) (sessions - 1) * random.nextInt(3600));
+            try (Writer writer = Files.newBufferedWriter(dir.resolve(day + ".txt"), Charset.defaultCharset())) {
+                writer.write("Number of sessions: " + sessions + "\n" +
+                        "Last session duration: " + last + "\n" +
+                        "Longest session duration: " + longest + "\n" +
+                        "Total study time today: " + total + "\n" +
+                        "Total study time this week: " + total + "\n");
+            }
+        }
+        return dir;
+    }
+
+    static void delete(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
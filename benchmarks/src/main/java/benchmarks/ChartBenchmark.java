@@ -0,0 +1,72 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregation behind a chart refresh: the seven daily totals of the current week turned into bar
+ * heights, over a history of the given number of years.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChartBenchmark {
+    @Param({"1", "10"})
+    private int years;
+
+    private Workload workload;
+    private Path dir;
+    private int monday;
+    private final double[] hours = new double[7];
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("scheduler-chart-");
+        workload = Workload.create();
+        workload.open(dir);
+        Random random = new Random(years);
+        LocalDate today = LocalDate.now();
+        for (LocalDate day = today.minusYears(years); !day.isAfter(today); day = day.plusDays(1)) {
+            long start = day.toEpochDay() * 86_400_000L + 8 * 3_600_000L;
+            for (int session = random.nextInt(4); session > 0; session--) {
+                long length = 60_000L * (5 + random.nextInt(90));
+                workload.appendSession(start, start + length, (int) day.toEpochDay());
+                start += length + 600_000L;
+            }
+        }
+        monday = (int) today.with(DayOfWeek.MONDAY).toEpochDay();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        workload.close();
+        Archives.delete(dir);
+    }
+
+    @Benchmark
+    public double[] weekChart() {
+        workload.weekChart(monday, hours);
+        return hours;
+    }
+}
@@ -0,0 +1,52 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Label formatting, run every second while a session is in progress and on every label refresh.
+ * Run with {@code -prof gc} to see the allocations per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FormatBenchmark {
+    @Param({"42", "754", "11045"}) // seconds only, minutes and hours
+    private long seconds;
+
+    private Workload workload;
+    private Duration duration;
+    private long tick;
+
+    @Setup
+    public void setUp() {
+        workload = Workload.create();
+        duration = Duration.ofSeconds(seconds);
+    }
+
+    // every call shows a new second, like the ticks of a running session
+    @Benchmark
+    public CharSequence formatElapsed() {
+        return workload.formatElapsed(seconds + (tick++ & 1023));
+    }
+
+    @Benchmark
+    public double calculateTime() {
+        return workload.calculateTime(duration);
+    }
+}
@@ -0,0 +1,67 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Import of a directory of daily exports, as done by the load button. The archive is generated once
+ * per trial; every invocation imports it into an empty journal.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImportBenchmark {
+    @Param({"10", "1000", "100000"})
+    private int files;
+
+    private Path archive;
+    private Path dir;
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        archive = Archives.dailyExports(files);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteArchive() throws IOException {
+        Archives.delete(archive);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("scheduler-import-");
+        workload = Workload.create();
+        workload.open(dir);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() throws IOException {
+        workload.close();
+        Archives.delete(dir);
+    }
+
+    @Benchmark
+    public int importDirectory() throws Exception {
+        return workload.importDirectory(archive);
+    }
+}
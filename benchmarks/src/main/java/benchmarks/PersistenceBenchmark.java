@@ -0,0 +1,79 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+/**
+ * The write path of a finished session. {@code endSession} is the current path through the session
+ * tracker into the journal; {@code legacyStorePreferences} repeats the six Preferences puts of
+ * earlier versions on a throwaway node, as the baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+    private Workload workload;
+    private Path dir;
+    private Preferences preferences;
+    private Duration totalToday = Duration.ZERO;
+    private int sessions;
+
+    // a fresh journal every iteration, so the file does not grow across the whole run
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("scheduler-journal-");
+        workload = Workload.create();
+        workload.open(dir);
+        preferences = Preferences.userRoot().node("scheduler-benchmark");
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException, BackingStoreException {
+        workload.close();
+        Archives.delete(dir);
+        preferences.removeNode();
+    }
+
+    @Benchmark
+    public long endSession() throws IOException {
+        return workload.startAndStopSession();
+    }
+
+    @Benchmark
+    public void legacyStorePreferences() {
+        Duration session = Duration.ofSeconds(1500);
+        totalToday = totalToday.plus(session);
+        String today = LocalDate.now().toString();
+        String longest = preferences.get("longest_session(" + today + ")", "PT0S");
+        preferences.put("total_today(" + today + ")", totalToday.toString());
+        preferences.put("total_week", totalToday.toString());
+        preferences.putInt("number_of_sessions(" + today + ")", ++sessions);
+        preferences.put("longest_session(" + today + ")",
+                Duration.parse(longest).compareTo(session) > 0 ? longest : session.toString());
+        preferences.put("last_session(" + today + ")", session.toString());
+        preferences.put(DayOfWeek.from(LocalDate.now()).toString(), totalToday.toString());
+    }
+}
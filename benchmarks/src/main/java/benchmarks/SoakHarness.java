@@ -0,0 +1,335 @@
+package benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.prefs.Preferences;
+
+/**
+ * Years of daily use in a few minutes, headless: a session timer is started on the first day and
+ * never stopped, every simulated day times a session with the start and stop buttons, reads the
+ * elapsed time label of the running timer, adds the sessions of the day, refreshes the labels and the chart, saves
+ * the day and compacts the legacy preferences; some days are cleared, all of it once a year. Once a
+ * week the exports are loaded back and a report of the last year is made, once a quarter the history
+ * is exported and a snapshot saved and loaded. The date comes from a synthetic clock.
+ * <p>
+ * Every window of sample days prints a CSV row with the heap after a GC, the live threads, the
+ * {@code XYChart.Data} in the chart and the median and 99th percentile latency of each operation.
+ * The run fails, exit code 1, if the heap keeps growing over the second half, threads leak, the
+ * chart holds more bars than it may, or the latencies of the last quarter are a factor above those
+ * of the first. Run with:
+ * <pre>
+ *     java -cp benchmarks/target/benchmarks.jar benchmarks.SoakHarness [--years 10] [--sample-days 30]
+ *          [--clear-all-days 365] [--max-heap-growth-mb-per-year 16] [--max-latency-factor 3]
+ * </pre>
+ */
+public final class SoakHarness {
+    private static final long DAY_MILLIS = 86_400_000L;
+    private static final String[] VIEWS = {"WEEK", "MONTH", "YEAR", "ALL"};
+    private static final String[] OPERATIONS = {"session", "elapsed", "labels", "chart", "save", "compact", "load",
+            "report", "export", "snapshot"};
+    private static final long MIN_REGRESSION_NANOS = 1_000_000; // slower than this before a factor counts
+
+    private final int years;
+    private final int sampleDays;
+    private final int clearAllDays;
+    private final double maxHeapGrowthPerYear;
+    private final double maxLatencyFactor;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final Map<String, long[]> latencies = new LinkedHashMap<>(); // of the current window
+    private final Map<String, Integer> counts = new LinkedHashMap<>();
+    private final List<Sample> samples = new ArrayList<>();
+
+    private SoakHarness(int years, int sampleDays, int clearAllDays, double maxHeapGrowthPerYear,
+                        double maxLatencyFactor) {
+        this.years = years;
+        this.sampleDays = sampleDays;
+        this.clearAllDays = clearAllDays;
+        this.maxHeapGrowthPerYear = maxHeapGrowthPerYear;
+        this.maxLatencyFactor = maxLatencyFactor;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i], args[i + 1]);
+        }
+        SoakHarness harness = new SoakHarness(
+                Integer.parseInt(options.getOrDefault("--years", "10")),
+                Integer.parseInt(options.getOrDefault("--sample-days", "30")),
+                Integer.parseInt(options.getOrDefault("--clear-all-days", "365")),
+                Double.parseDouble(options.getOrDefault("--max-heap-growth-mb-per-year", "16")) * 1024 * 1024,
+                Double.parseDouble(options.getOrDefault("--max-latency-factor", "3")));
+        List<String> failures = harness.run();
+        if (failures.isEmpty()) {
+            System.out.println("SOAK PASSED");
+        } else {
+            failures.forEach(failure -> System.out.println("  " + failure));
+            System.out.println("SOAK FAILED");
+            System.exit(1);
+        }
+    }
+
+    private List<String> run() throws Exception {
+        Path dir = Files.createTempDirectory("scheduler-soak-");
+        Preferences node = Preferences.userRoot().node("scheduler-soak-" + ProcessHandle.current().pid());
+        LocalDate first = LocalDate.now().minusYears(years);
+        SyntheticClock clock = new SyntheticClock(first);
+        Random random = new Random(years);
+        try (SoakWorkload workload = SoakWorkload.create()) {
+            workload.open(dir.resolve("data"), clock, node);
+            workload.seedLegacyPreferences(first.minusYears(1), first);
+            header();
+            int days = (int) (LocalDate.now().toEpochDay() - first.toEpochDay());
+            int maxData = 0;
+            for (int d = 0; d < days; d++) {
+                LocalDate date = first.plusDays(d);
+                clock.setDate(date);
+                maxData = Math.max(maxData, day(workload, dir, date, d, random));
+                if ((d + 1) % sampleDays == 0) {
+                    sample(date, d + 1, maxData);
+                    maxData = 0;
+                }
+            }
+            return check(workload.maxChartBars());
+        } finally {
+            node.removeNode();
+            Archives.delete(dir);
+        }
+    }
+
+    // one simulated day, returns the most XYChart.Data the chart held
+    private int day(SoakWorkload workload, Path dir, LocalDate date, int d, Random random) throws Exception {
+        int epochDay = (int) date.toEpochDay();
+        long midnight = epochDay * DAY_MILLIS;
+        long start = System.nanoTime();
+        workload.startSession();
+        workload.stopSession();
+        long time = midnight + 8 * 3_600_000L;
+        for (int i = random.nextInt(5); i > 0; i--) {
+            long length = 60_000L + random.nextInt(7_200_000);
+            workload.appendSession(time, time + length, epochDay);
+            time += length + random.nextInt(3_600_000);
+        }
+        record("session", start);
+
+        start = System.nanoTime();
+        workload.elapsedText();
+        record("elapsed", start);
+
+        start = System.nanoTime();
+        workload.refreshLabels(epochDay);
+        record("labels", start);
+
+        start = System.nanoTime();
+        int data = workload.refreshChart(VIEWS[d % VIEWS.length]);
+        record("chart", start);
+
+        // a folder of exports per year, as kept by hand; a load lists the whole folder
+        Path exports = Files.createDirectories(dir.resolve("exports").resolve(String.valueOf(date.getYear())));
+        start = System.nanoTime();
+        workload.saveDay(exports, epochDay);
+        record("save", start);
+
+        start = System.nanoTime();
+        workload.compactPreferences(date);
+        record("compact", start);
+
+        if (random.nextInt(50) == 0) {
+            workload.clearDay(epochDay - random.nextInt(30));
+        }
+        if ((d + 1) % clearAllDays == 0) {
+            workload.clearAll();
+        }
+        if (date.getDayOfWeek().getValue() == 7) {
+            start = System.nanoTime();
+            workload.loadDirectory(exports);
+            record("load", start);
+
+            start = System.nanoTime();
+            workload.report(epochDay - 364, epochDay, epochDay);
+            record("report", start);
+        }
+        if ((d + 1) % 90 == 0) {
+            start = System.nanoTime();
+            workload.exportHistory(dir.resolve("history.csv"));
+            record("export", start);
+
+            start = System.nanoTime();
+            workload.snapshotRoundTrip(dir.resolve("history.snapshot"));
+            record("snapshot", start);
+        }
+        return data;
+    }
+
+    private void record(String operation, long start) {
+        long nanos = System.nanoTime() - start;
+        long[] values = latencies.computeIfAbsent(operation, key -> new long[16]);
+        int count = counts.getOrDefault(operation, 0);
+        if (count == values.length) {
+            values = Arrays.copyOf(values, count * 2);
+            latencies.put(operation, values);
+        }
+        values[count] = nanos;
+        counts.put(operation, count + 1);
+    }
+
+    private void header() {
+        StringBuilder line = new StringBuilder("date,day,heapMB,threads,chartData");
+        for (String operation : OPERATIONS) {
+            line.append(',').append(operation).append("P50us,").append(operation).append("P99us");
+        }
+        System.out.println(line);
+    }
+
+    private void sample(LocalDate date, int day, int maxData) {
+        System.gc();
+        long heap = memory.getHeapMemoryUsage().getUsed();
+        int threadCount = threads.getThreadCount();
+        Sample sample = new Sample(day, heap, threadCount, maxData);
+        StringBuilder line = new StringBuilder().append(date).append(',').append(day).append(',')
+                .append(String.format("%.1f", heap / 1048576.0)).append(',').append(threadCount).append(',')
+                .append(maxData);
+        for (String operation : OPERATIONS) {
+            long[] values = latencies.get(operation);
+            int count = counts.getOrDefault(operation, 0);
+            if (count == 0) {
+                line.append(",,");
+                continue;
+            }
+            Arrays.sort(values, 0, count);
+            long p50 = values[(count - 1) / 2];
+            long p99 = values[(int) Math.ceil(count * 0.99) - 1];
+            sample.p99.put(operation, p99);
+            line.append(',').append(p50 / 1000).append(',').append(p99 / 1000);
+        }
+        latencies.clear();
+        counts.clear();
+        samples.add(sample);
+        System.out.println(line);
+    }
+
+    private List<String> check(int maxChartBars) {
+        List<String> failures = new ArrayList<>();
+        if (samples.size() < 4) {
+            failures.add("too few samples for a verdict: " + samples.size());
+            return failures;
+        }
+        // the first half warms up and fills the caches, the second half has to stay flat
+        List<Sample> second = samples.subList(samples.size() / 2, samples.size());
+        double slope = heapSlope(second) * 365;
+        if (slope > maxHeapGrowthPerYear) {
+            failures.add(String.format("heap grows by %.1f MB a year", slope / 1048576));
+        }
+        int baseThreads = samples.get(0).threads;
+        for (Sample sample : samples) {
+            if (sample.threads > baseThreads + 4) {
+                failures.add("threads grew from " + baseThreads + " to " + sample.threads + " by day " + sample.day);
+                break;
+            }
+        }
+        for (Sample sample : samples) {
+            if (sample.chartData > maxChartBars) {
+                failures.add("chart held " + sample.chartData + " data by day " + sample.day + ", at most "
+                        + maxChartBars);
+                break;
+            }
+        }
+        // the first window is mostly the JIT at work
+        int quarter = Math.max(1, samples.size() / 4);
+        List<Sample> baseline = samples.subList(1, Math.max(2, quarter));
+        List<Sample> last = samples.subList(samples.size() - quarter, samples.size());
+        for (String operation : OPERATIONS) {
+            long before = medianP99(baseline, operation);
+            long after = medianP99(last, operation);
+            if (before > 0 && after > MIN_REGRESSION_NANOS && after > before * maxLatencyFactor) {
+                failures.add(String.format("%s p99 went from %d us to %d us", operation, before / 1000,
+                        after / 1000));
+            }
+        }
+        return failures;
+    }
+
+    // least squares, bytes per day
+    private static double heapSlope(List<Sample> samples) {
+        double meanX = 0;
+        double meanY = 0;
+        for (Sample sample : samples) {
+            meanX += sample.day;
+            meanY += sample.heap;
+        }
+        meanX /= samples.size();
+        meanY /= samples.size();
+        double covariance = 0;
+        double variance = 0;
+        for (Sample sample : samples) {
+            covariance += (sample.day - meanX) * (sample.heap - meanY);
+            variance += (sample.day - meanX) * (sample.day - meanX);
+        }
+        return variance == 0 ? 0 : covariance / variance;
+    }
+
+    private static long medianP99(List<Sample> samples, String operation) {
+        long[] values = samples.stream().filter(sample -> sample.p99.containsKey(operation))
+                .mapToLong(sample -> sample.p99.get(operation)).sorted().toArray();
+        return values.length == 0 ? 0 : values[(values.length - 1) / 2];
+    }
+
+    private static class Sample {
+        final int day;
+        final long heap;
+        final int threads;
+        final int chartData;
+        final Map<String, Long> p99 = new LinkedHashMap<>();
+
+        Sample(int day, long heap, int threads, int chartData) {
+            this.day = day;
+            this.heap = heap;
+            this.threads = threads;
+            this.chartData = chartData;
+        }
+    }
+
+    // noon of the simulated day, in UTC as the epoch-days of the journal
+    private static class SyntheticClock extends Clock {
+        private volatile Instant instant;
+
+        SyntheticClock(LocalDate date) {
+            setDate(date);
+        }
+
+        void setDate(LocalDate date) {
+            instant = date.atTime(12, 0).toInstant(ZoneOffset.UTC);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
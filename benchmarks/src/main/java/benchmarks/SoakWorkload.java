@@ -0,0 +1,76 @@
+package benchmarks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.prefs.Preferences;
+
+/**
+ * The operations of the application driven by the {@link SoakHarness}, implemented in the default
+ * package by {@code SchedulerSoakWorkload} for the same reason as {@link Workload}. Everything that
+ * asks for the date asks the clock given to {@link #open}, so years go by in minutes.
+ */
+public interface SoakWorkload extends Closeable {
+
+    static SoakWorkload create() {
+        try {
+            return Class.forName("SchedulerSoakWorkload").asSubclass(SoakWorkload.class).getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Opens the session tracker of the local user on a data directory, the chart and the
+     * preferences on the given node.
+     */
+    void open(Path dir, Clock clock, Preferences node) throws IOException;
+
+    // per-day keys of the versions before the journal, as an upgraded installation has them
+    void seedLegacyPreferences(LocalDate from, LocalDate to);
+
+    // the daily compaction of the legacy keys, returns the number of keys left
+    int compactPreferences(LocalDate today);
+
+    // start and stop buttons, dated by the clock given to open
+    void startSession() throws IOException;
+
+    long stopSession() throws IOException;
+
+    void appendSession(long startMillis, long endMillis, int epochDay) throws IOException;
+
+    void clearDay(int epochDay) throws IOException;
+
+    void clearAll() throws IOException;
+
+    // text of the elapsed time label of the session timer started by open, left running all along
+    CharSequence elapsedText();
+
+    // figures behind the data labels of the day
+    void refreshLabels(int epochDay);
+
+    /**
+     * Refreshes the chart in the given view (WEEK, MONTH, YEAR or ALL) and returns the number of
+     * {@code XYChart.Data} in its series.
+     */
+    int refreshChart(String view);
+
+    int maxChartBars();
+
+    void report(int fromEpochDay, int toEpochDay, int todayEpochDay);
+
+    // the save button with a text file: today's figures as dir/yyyy-MM-dd.txt
+    void saveDay(Path dir, int epochDay) throws IOException;
+
+    // the load button with a text file of the directory, returns the days written
+    int loadDirectory(Path dir) throws Exception;
+
+    // the save button with a csv file: the whole history
+    void exportHistory(Path file) throws Exception;
+
+    // the save and load buttons with a snapshot file
+    void snapshotRoundTrip(Path file) throws IOException;
+}
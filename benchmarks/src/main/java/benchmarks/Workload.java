@@ -0,0 +1,49 @@
+package benchmarks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * The operations of the application that are benchmarked. JMH does not accept benchmarks in the
+ * default package, and the application lives there, so the calls go through this interface to
+ * {@code SchedulerWorkload}, which is compiled into the default package of this module. There is
+ * a single implementation, so the interface calls are inlined and cost nothing.
+ */
+public interface Workload extends Closeable {
+
+    static Workload create() {
+        try {
+            return Class.forName("SchedulerWorkload").asSubclass(Workload.class).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // text of the elapsed time label, built in a reused buffer
+    CharSequence formatElapsed(long seconds);
+
+    double calculateTime(Duration duration);
+
+    /**
+     * Opens the session tracker of the local user on a data directory.
+     */
+    void open(Path dir) throws IOException;
+
+    // path of the stop button: ends the running session and journals it
+    long startAndStopSession() throws IOException;
+
+    void appendSession(long startMillis, long endMillis, int epochDay) throws IOException;
+
+    /**
+     * Aggregation of the chart refresh, fills the bar heights in hours of the week starting on
+     * the given Monday.
+     */
+    void weekChart(int mondayEpochDay, double[] hours);
+
+    /**
+     * Imports a directory of daily exports the way the load button does, returns the days applied.
+     */
+    int importDirectory(Path dir) throws Exception;
+}
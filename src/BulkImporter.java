@@ -0,0 +1,159 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Imports the daily totals of exported {@code yyyy-MM-dd.txt} files.
+ * Files are parsed in parallel on a dedicated pool of bounded size and only read up to the
+ * "total study time" line. Nothing is written until every file has been parsed, then all days
+ * are applied to the journal in one batch.
+ */
+public class BulkImporter {
+    public static final int DEFAULT_PARALLELISM = Math.min(4, Runtime.getRuntime().availableProcessors());
+    private static final String[] TOTAL_PREFIXES = {"Total study time today: ", "Ukupno vreme ucenja danas: "};
+
+    private final int parallelism;
+    private volatile boolean cancelled;
+
+    public BulkImporter(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Parses the exports in the background. The listener is called from the worker threads about
+     * a hundred times over the whole import.
+     */
+    public CompletableFuture<Result> parse(List<Path> files, ProgressListener listener) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        CompletableFuture<Result> future = CompletableFuture.supplyAsync(() -> {
+            SchedulerEvents.Import event = new SchedulerEvents.Import();
+            event.begin();
+            Result result = new Result(files);
+            AtomicInteger done = new AtomicInteger();
+            int step = Math.max(1, files.size() / 100);
+            IntStream.range(0, files.size()).parallel().forEach(i -> {
+                if (cancelled) {
+                    return;
+                }
+                long startNanos = System.nanoTime();
+                result.parse(i, files.get(i));
+                long parseNanos = System.nanoTime() - startNanos;
+                result.parseNanos.add(parseNanos);
+                SchedulerMetrics.get().importedFile(parseNanos);
+                int n = done.incrementAndGet();
+                if (n % step == 0 || n == files.size()) {
+                    listener.progress(n, files.size());
+                }
+            });
+            event.files = files.size();
+            event.errors = result.errors.size();
+            event.parseNanos = result.parseNanos.sum();
+            event.cancelled = cancelled;
+            event.commit();
+            return result;
+        }, pool);
+        future.whenComplete((result, e) -> pool.shutdown());
+        return future;
+    }
+
+    public interface ProgressListener {
+        void progress(int done, int total);
+    }
+
+    public static class Result {
+        private final int[] days;
+        private final long[] totals;
+        private final boolean[] failed;
+        private final Queue<String> errors = new ConcurrentLinkedQueue<>();
+        private final LongAdder parseNanos = new LongAdder();
+
+        private Result(List<Path> files) {
+            days = new int[files.size()];
+            totals = new long[files.size()];
+            failed = new boolean[files.size()];
+            Arrays.fill(days, Integer.MIN_VALUE); // stays so for files that are not exports or were never parsed
+        }
+
+        private void parse(int i, Path file) {
+            LocalDate date;
+            try {
+                date = LocalDate.parse(file.getFileName().toString().replace(".txt", ""));
+            } catch (DateTimeParseException e) {
+                return;
+            }
+            try (BufferedReader reader = Files.newBufferedReader(file, Charset.defaultCharset())) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    for (String prefix : TOTAL_PREFIXES) {
+                        if (line.startsWith(prefix)) {
+                            totals[i] = Duration.parse(line.substring(prefix.length()).trim()).toMillis();
+                            days[i] = (int) date.toEpochDay();
+                            return;
+                        }
+                    }
+                }
+            } catch (IOException | DateTimeParseException e) {
+                failed[i] = true;
+                errors.add(file.getFileName() + ": " + e.getMessage());
+            }
+        }
+
+        // the day of the i-th file, Integer.MIN_VALUE if it holds no total
+        int getDay(int i) {
+            return days[i];
+        }
+
+        long getTotal(int i) {
+            return totals[i];
+        }
+
+        // whether the i-th file could not be read or parsed, it is worth another try
+        boolean isFailed(int i) {
+            return failed[i];
+        }
+
+        public List<String> getErrors() {
+            return new ArrayList<>(errors);
+        }
+
+        /**
+         * Stores the imported totals as one session per day, on the days the journal has nothing
+         * for. Days with sessions are left alone, so importing the same directory again writes
+         * nothing and an export never replaces the sessions it was taken from or those added since.
+         */
+        public int applyTo(SessionJournal journal, RollupIndex rollups) throws IOException {
+            int applied = 0;
+            synchronized (journal) {
+                for (int i = 0; i < days.length; i++) {
+                    if (days[i] != Integer.MIN_VALUE && totals[i] > 0 && rollups.dayTotal(days[i]) == 0) {
+                        journal.importDay(days[i], 1, totals[i], totals[i], totals[i]);
+                        applied++;
+                    }
+                }
+            }
+            return applied;
+        }
+    }
+}
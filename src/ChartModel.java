@@ -0,0 +1,173 @@
+import javafx.collections.ObservableList;
+import javafx.scene.Node;
+import javafx.scene.chart.XYChart;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.format.DateTimeFormatter;
+import java.time.format.TextStyle;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ResourceBundle;
+
+/**
+ * Bars of the chart for the week, month, year or the whole history. The series is never grown:
+ * refreshing a view whose bars are already shown only changes their values, and switching views
+ * replaces the bars. Long ranges are aggregated into at most {@link #MAX_BARS} buckets of whole
+ * months, so the number of chart nodes stays bounded however long the history is.
+ */
+public class ChartModel {
+    public static final int MAX_BARS = 36;
+
+    public enum View { WEEK, MONTH, YEAR, ALL }
+
+    private final XYChart.Series<String, Number> series;
+    private final RollupIndex rollups;
+    private final HistoryStore history;
+    private final ResourceBundle languageData;
+    private final Clock clock; // which week, month and year are shown
+    private final DateTimeFormatter bucketFormat;
+    private final String[] labels = new String[MAX_BARS];
+    private final long[] totals = new long[MAX_BARS];
+    private final long[] days = new long[31];
+    private View view = View.WEEK;
+
+    public ChartModel(XYChart.Series<String, Number> series, RollupIndex rollups, HistoryStore history,
+                      ResourceBundle languageData) {
+        this(series, rollups, history, languageData, Clock.systemDefaultZone());
+    }
+
+    public ChartModel(XYChart.Series<String, Number> series, RollupIndex rollups, HistoryStore history,
+                      ResourceBundle languageData, Clock clock) {
+        this.series = series;
+        this.rollups = rollups;
+        this.history = history;
+        this.languageData = languageData;
+        this.clock = clock;
+        this.bucketFormat = DateTimeFormatter.ofPattern("MMM yy", languageData.getLocale());
+    }
+
+    public View getView() {
+        return view;
+    }
+
+    public long show(View view) {
+        this.view = view;
+        return refresh();
+    }
+
+    /**
+     * Recomputes the bars of the current view and returns the largest one in milliseconds.
+     */
+    public long refresh() {
+        long startNanos = System.nanoTime();
+        SchedulerEvents.ChartRefresh event = new SchedulerEvents.ChartRefresh();
+        event.begin();
+        LocalDate today = LocalDate.now(clock);
+        int bars;
+        switch (view) {
+            case WEEK:
+                bars = 7;
+                rollups.dayTotals((int) today.with(DayOfWeek.MONDAY).toEpochDay(), days);
+                for (DayOfWeek day : DayOfWeek.values()) {
+                    labels[day.ordinal()] = languageData.getString(day.toString());
+                    totals[day.ordinal()] = days[day.ordinal()];
+                }
+                break;
+            case MONTH:
+                bars = today.lengthOfMonth();
+                rollups.dayTotals((int) today.withDayOfMonth(1).toEpochDay(), days);
+                for (int day = 0; day < bars; day++) {
+                    labels[day] = Integer.toString(day + 1);
+                    totals[day] = days[day];
+                }
+                break;
+            case YEAR:
+                bars = 12;
+                for (Month month : Month.values()) {
+                    labels[month.ordinal()] = month.getDisplayName(TextStyle.SHORT, languageData.getLocale());
+                    totals[month.ordinal()] = rollups.monthTotal((int) today.withMonth(month.getValue()).withDayOfMonth(1).toEpochDay());
+                }
+                break;
+            default:
+                bars = allTime(today);
+                break;
+        }
+        boolean rebuilt = apply(bars);
+        long max = 0;
+        for (int i = 0; i < bars; i++) {
+            max = Math.max(max, totals[i]);
+        }
+        event.view = view.toString();
+        event.bars = bars;
+        event.rebuilt = rebuilt;
+        event.commit();
+        SchedulerMetrics.get().chartRefreshes.record(System.nanoTime() - startNanos);
+        return max;
+    }
+
+    // whole history in buckets of equal numbers of months, the last one ending with this month
+    private int allTime(LocalDate today) {
+        LocalDate thisMonth = today.withDayOfMonth(1);
+        int firstDay = history.firstDay();
+        LocalDate firstMonth = firstDay == Integer.MAX_VALUE ? thisMonth : LocalDate.ofEpochDay(firstDay).withDayOfMonth(1);
+        if (firstMonth.isAfter(thisMonth)) { // sessions dated ahead of the clock, e.g. synced from a device set forward
+            firstMonth = thisMonth;
+        }
+        int months = (int) ChronoUnit.MONTHS.between(firstMonth, thisMonth) + 1;
+        int monthsPerBar = (months + MAX_BARS - 1) / MAX_BARS;
+        int bars = (months + monthsPerBar - 1) / monthsPerBar;
+        LocalDate start = thisMonth.minusMonths((long) bars * monthsPerBar - 1);
+        for (int i = 0; i < bars; i++, start = start.plusMonths(monthsPerBar)) {
+            LocalDate end = start.plusMonths(monthsPerBar).minusDays(1);
+            labels[i] = start.format(bucketFormat);
+            totals[i] = history.total((int) start.toEpochDay(), (int) end.toEpochDay());
+        }
+        return bars;
+    }
+
+    // returns whether the bars were replaced
+    private boolean apply(int bars) {
+        ObservableList<XYChart.Data<String, Number>> data = series.getData();
+        boolean sameBars = data.size() == bars;
+        for (int i = 0; sameBars && i < bars; i++) {
+            sameBars = data.get(i).getXValue().equals(labels[i]);
+        }
+        if (sameBars) { // only the heights change, the bars and their nodes stay
+            for (int i = 0; i < bars; i++) {
+                double hours = Scheduler.calculateTime(Duration.ofMillis(totals[i]));
+                if (data.get(i).getYValue().doubleValue() != hours) {
+                    data.get(i).setYValue(hours);
+                }
+            }
+            return false;
+        }
+        // the bar chart looks bars up by category, so other categories need new bars
+        List<XYChart.Data<String, Number>> replaced = new ArrayList<>(bars);
+        for (int i = 0; i < bars; i++) {
+            replaced.add(new XYChart.Data<>(labels[i], Scheduler.calculateTime(Duration.ofMillis(totals[i]))));
+        }
+        data.setAll(replaced);
+        for (XYChart.Data<String, Number> bar : replaced) {
+            style(bar);
+        }
+        return true;
+    }
+
+    private static void style(XYChart.Data<String, Number> bar) {
+        Node node = bar.getNode();
+        if (node != null) {
+            node.getStyleClass().add("white-bar");
+        } else {
+            bar.nodeProperty().addListener((observable, old, created) -> {
+                if (created != null) {
+                    created.getStyleClass().add("white-bar");
+                }
+            });
+        }
+    }
+}
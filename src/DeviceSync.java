@@ -0,0 +1,237 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Shares the sessions of this device with the other devices of the same user. Every device owns a
+ * grow-only log of the sessions it timed, which only it appends to, and the others read through a
+ * {@link Transport}. A device remembers how many records of every other log it has received; that
+ * version vector is all a sync compares, so a sync reads and writes only what is new since the last
+ * one, however long the history. Logs only grow and a session has exactly one owner, so merging is a
+ * union that comes out the same in any order and never conflicts.
+ * <p>
+ * Received sessions go into the journal with {@link SessionJournal#FLAG_SYNCED} and are never sent
+ * on again. Only sessions timed on this device are sent, sessions imported from text files stay
+ * local, and so do clears: clearing a day changes what this device shows, not the other logs.
+ * Sessions a restored snapshot brings back carry {@link SessionJournal#FLAG_RESTORED} and are not
+ * sent again either, they were sent when they were timed.
+ * <pre>
+ * sync.state  magic "SSST", version, device id, journal index sent up to, version vector
+ *             (device id, records received), then the batch being written to the journal, if any,
+ *             then the journal index and own log size before the append being sent, if any
+ * </pre>
+ * The batch is noted before the first received record is written, so after a crash in the middle
+ * the journal size tells how much of it got in and nothing is received twice. The same goes for
+ * sending: the size of the log of this device before the append is noted, and after a crash the
+ * size it has now tells how many of the sessions got in.
+ */
+public class DeviceSync {
+    private static final int MAGIC = 0x53535354; // "SSST"
+    private static final int VERSION = 2; // 1 had no pending send
+
+    private final Path statePath;
+    private final SessionJournal journal;
+    private final Transport transport;
+    private String device;
+    private int sentIndex; // journal records before it were looked at by an earlier send
+    private final Map<String, Long> received = new HashMap<>(); // version vector of the other devices
+    private int batchJournalSize = -1; // journal size before the batch being written, -1 if none
+    private final Map<String, Long> batch = new LinkedHashMap<>(); // records per device in the order written
+    private int pendingIndex = -1; // journal index the append being sent goes up to, -1 if none
+    private long pendingLogSize; // size of the log of this device before that append
+
+    private DeviceSync(Path statePath, SessionJournal journal, Transport transport) {
+        this.statePath = statePath;
+        this.journal = journal;
+        this.transport = transport;
+    }
+
+    /**
+     * Loads the state, giving this device an id on first use, and finishes the batch a crash
+     * interrupted. Nothing is read from the transport until the first {@link #sync()}.
+     */
+    public static DeviceSync open(Path statePath, SessionJournal journal, Transport transport) throws IOException {
+        DeviceSync sync = new DeviceSync(statePath, journal, transport);
+        if (Files.exists(statePath)) {
+            sync.loadState();
+        } else {
+            sync.device = UUID.randomUUID().toString();
+            sync.saveState();
+        }
+        if (sync.batchJournalSize >= 0) {
+            sync.recoverBatch();
+        }
+        return sync;
+    }
+
+    public String getDevice() {
+        return device;
+    }
+
+    /**
+     * Sends the new sessions of this device and receives those of the others. Returns the number
+     * of sessions received.
+     */
+    public synchronized int sync() throws IOException {
+        send();
+        return receive();
+    }
+
+    private void send() throws IOException {
+        int size = journal.size();
+        if (sentIndex > size) { // a new journal
+            sentIndex = 0;
+            pendingIndex = -1;
+        }
+        if (pendingIndex >= 0) { // the last send stopped after noting its append, the log tells how far it got
+            send(pendingIndex, transport.size(device) - pendingLogSize);
+        }
+        send(size, 0);
+    }
+
+    // sends the sessions timed here from sentIndex to the journal index, but the first skipped ones
+    private void send(int to, long skipped) throws IOException {
+        List<long[]> sessions = new ArrayList<>();
+        journal.forEach(sentIndex, to, (startMillis, endMillis, epochDay, flags) -> {
+            if (flags == SessionJournal.FLAG_SESSION) {
+                sessions.add(new long[]{startMillis, endMillis, epochDay});
+            }
+        });
+        int skip = (int) Math.max(0, Math.min(skipped, sessions.size()));
+        if (skip < sessions.size()) {
+            long[] records = new long[(sessions.size() - skip) * Transport.FIELDS];
+            for (int i = skip; i < sessions.size(); i++) {
+                System.arraycopy(sessions.get(i), 0, records, (i - skip) * Transport.FIELDS, Transport.FIELDS);
+            }
+            pendingIndex = to;
+            pendingLogSize = transport.size(device) - skip;
+            saveState();
+            transport.append(device, records);
+        }
+        sentIndex = to;
+        pendingIndex = -1;
+        saveState();
+    }
+
+    private int receive() throws IOException {
+        Map<String, long[]> incoming = new LinkedHashMap<>();
+        for (String other : transport.devices()) {
+            if (!other.equals(device)) {
+                long[] records = transport.read(other, received.getOrDefault(other, 0L));
+                if (records.length > 0) {
+                    incoming.put(other, records);
+                }
+            }
+        }
+        if (incoming.isEmpty()) {
+            return 0;
+        }
+        int sessions = 0;
+        synchronized (journal) { // nothing else gets between the noted journal size and the batch
+            batchJournalSize = journal.size();
+            incoming.forEach((other, records) -> batch.put(other, (long) records.length / Transport.FIELDS));
+            saveState();
+            for (long[] records : incoming.values()) {
+                for (int i = 0; i < records.length; i += Transport.FIELDS) {
+                    journal.append(records[i], records[i + 1], (int) records[i + 2], SessionJournal.FLAG_SYNCED);
+                    sessions++;
+                }
+            }
+            batch.forEach((other, count) -> received.merge(other, count, Long::sum));
+            batch.clear();
+            batchJournalSize = -1;
+            saveState();
+        }
+        return sessions;
+    }
+
+    // the records the journal grew by since the batch was noted are its first ones
+    private void recoverBatch() throws IOException {
+        long written = Math.max(0, journal.size() - batchJournalSize);
+        for (Map.Entry<String, Long> entry : batch.entrySet()) {
+            long count = Math.min(written, entry.getValue());
+            received.merge(entry.getKey(), count, Long::sum);
+            written -= count;
+        }
+        batch.clear();
+        batchJournalSize = -1;
+        saveState();
+    }
+
+    private void loadState() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(statePath)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a sync state: " + statePath.getFileName());
+            }
+            int version = in.readInt();
+            if (version != VERSION && version != 1) {
+                throw new IOException("Unsupported sync state version");
+            }
+            device = in.readUTF();
+            sentIndex = in.readInt();
+            for (int i = in.readInt(); i > 0; i--) {
+                received.put(in.readUTF(), in.readLong());
+            }
+            batchJournalSize = in.readInt();
+            for (int i = in.readInt(); i > 0; i--) {
+                batch.put(in.readUTF(), in.readLong());
+            }
+            if (version >= 2) {
+                pendingIndex = in.readInt();
+                pendingLogSize = in.readLong();
+            }
+        }
+    }
+
+    private void saveState() throws IOException {
+        Path temp = statePath.resolveSibling(statePath.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(device);
+            out.writeInt(sentIndex);
+            out.writeInt(received.size());
+            for (Map.Entry<String, Long> entry : received.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+            out.writeInt(batchJournalSize);
+            out.writeInt(batch.size());
+            for (Map.Entry<String, Long> entry : batch.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+            out.writeInt(pendingIndex);
+            out.writeLong(pendingLogSize);
+        }
+        Files.move(temp, statePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Where the logs of the devices are kept. A log is a sequence of sessions, each as start and
+     * end epoch-millis and epoch-day; a device only ever appends to its own log.
+     */
+    public interface Transport {
+        int FIELDS = 3; // values per session in the arrays below
+
+        List<String> devices() throws IOException;
+
+        long size(String device) throws IOException;
+
+        // the sessions from index from to the end of the log, FIELDS values each
+        long[] read(String device, long from) throws IOException;
+
+        void append(String device, long[] sessions) throws IOException;
+    }
+}
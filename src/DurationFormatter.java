@@ -0,0 +1,42 @@
+/**
+ * Formats durations as "1h, 2m, 3s" after a fixed, already localized prefix. The text is built in
+ * a reusable buffer from primitive seconds, so formatting allocates nothing; the only allocation
+ * left on the tick path is the String handed to the label, and only when the text has changed.
+ */
+public class DurationFormatter {
+    private final String prefix;
+    private final StringBuilder text = new StringBuilder(64);
+    private long seconds = -1; // seconds shown by the current text
+
+    public DurationFormatter(String prefix) {
+        this.prefix = prefix;
+        text.append(prefix);
+    }
+
+    /**
+     * Formats the given seconds, returns false if the text would be the same as before.
+     */
+    public boolean update(long seconds) {
+        if (seconds == this.seconds) {
+            return false;
+        }
+        this.seconds = seconds;
+        text.setLength(0);
+        appendTo(text.append(prefix), seconds);
+        return true;
+    }
+
+    public CharSequence getText() {
+        return text;
+    }
+
+    public static StringBuilder appendTo(StringBuilder sb, long seconds) {
+        if (seconds >= 3600) {
+            sb.append(seconds / 3600).append("h, ");
+        }
+        if (seconds >= 60) {
+            sb.append(seconds % 3600 / 60).append("m, ");
+        }
+        return sb.append(seconds % 60).append('s');
+    }
+}
@@ -0,0 +1,126 @@
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * File work of a save or load action. The work runs on the I/O executor and reports its progress
+ * and the files it could not read through the task; once it is over, the result and a single
+ * {@link Report} of everything that went wrong are handed to one completion on the UI executor,
+ * which applies them in one go. Progress updates are coalesced like the ticks of
+ * {@link SessionTimer}, so a fast task never floods the UI executor.
+ */
+public class FileTask<T> {
+    private static final long NO_PROGRESS = -1;
+
+    private final Executor uiExecutor;
+    private final ProgressListener listener;
+    private final AtomicLong pendingProgress = new AtomicLong(NO_PROGRESS); // done << 32 | total
+    private final Queue<String> errors = new ConcurrentLinkedQueue<>();
+    private final List<Runnable> cancelHooks = new CopyOnWriteArrayList<>();
+    private volatile boolean cancelled;
+
+    public FileTask(Executor uiExecutor, ProgressListener listener) {
+        this.uiExecutor = uiExecutor;
+        this.listener = listener;
+    }
+
+    /**
+     * Runs the work on the I/O executor. The listener and the completion are called on the UI executor.
+     */
+    public FileTask<T> start(Executor ioExecutor, Work<T> work, Completion<T> completion) {
+        CompletableFuture.runAsync(() -> {
+            T result = null;
+            Throwable failure = null;
+            try {
+                result = work.run(this);
+            } catch (ExecutionException e) { // of a future the work waited for
+                failure = e.getCause();
+            } catch (Exception e) {
+                failure = e;
+            }
+            T finalResult = result;
+            Report report = new Report(new ArrayList<>(errors), failure, cancelled);
+            uiExecutor.execute(() -> completion.done(finalResult, report));
+        }, ioExecutor);
+        return this;
+    }
+
+    public void progress(int done, int total) {
+        if (pendingProgress.getAndSet((long) done << 32 | total) == NO_PROGRESS) {
+            uiExecutor.execute(() -> {
+                long latest = pendingProgress.getAndSet(NO_PROGRESS);
+                if (latest != NO_PROGRESS && !cancelled) {
+                    listener.progress((int) (latest >>> 32), (int) latest);
+                }
+            });
+        }
+    }
+
+    /**
+     * Records a file that could not be read or written, the work goes on with the others.
+     */
+    public void error(Path file, Exception e) {
+        errors.add(file.getFileName() + ": " + e.getMessage());
+    }
+
+    public void errors(List<String> messages) {
+        errors.addAll(messages);
+    }
+
+    /**
+     * Runs the hook when the task is cancelled, to stop a worker the task is waiting for.
+     */
+    public void onCancel(Runnable hook) {
+        cancelHooks.add(hook);
+        if (cancelled) {
+            hook.run();
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+        for (Runnable hook : cancelHooks) {
+            hook.run();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public interface Work<T> {
+        T run(FileTask<T> task) throws Exception;
+    }
+
+    public interface Completion<T> {
+        void done(T result, Report report);
+    }
+
+    public interface ProgressListener {
+        void progress(int done, int total);
+    }
+
+    // what went wrong, the result is only complete if the report is clean
+    public static class Report {
+        public final List<String> errors;
+        public final Throwable failure; // the work did not finish
+        public final boolean cancelled;
+
+        Report(List<String> errors, Throwable failure, boolean cancelled) {
+            this.errors = errors;
+            this.failure = failure;
+            this.cancelled = cancelled;
+        }
+
+        public boolean isClean() {
+            return errors.isEmpty() && failure == null && !cancelled;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Exports the whole session history of a journal as CSV, NDJSON or a compact binary format.
+ * Records are read from the journal in ranges and encoded straight into a direct buffer that is
+ * written to a {@link FileChannel} whenever it fills up, so memory use does not depend on the size
+ * of the history. Sessions dropped by a later "clear" are not exported.
+ * <p>
+ * The binary format is a 16 byte header (magic "SEXP", version, session count) followed by one
+ * 24 byte record per session: start and end epoch-millis, epoch-day and flags, big-endian.
+ */
+public class HistoryExporter {
+    public static final int BINARY_MAGIC = 0x53455850; // "SEXP"
+    public static final int BINARY_VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int CHUNK_RECORDS = 4096; // records read per journal lock
+    private static final int MAX_LINE = 160; // longest CSV or NDJSON line
+
+    public enum Format {
+        CSV, NDJSON, BINARY;
+
+        // by file extension, BINARY for anything that is not .csv or .ndjson/.json
+        public static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase();
+            return name.endsWith(".csv") ? CSV : name.endsWith(".ndjson") || name.endsWith(".json") ? NDJSON : BINARY;
+        }
+    }
+
+    private final Format format;
+    private final int fromEpochDay;
+    private final int toEpochDay;
+    private volatile boolean cancelled;
+
+    /**
+     * Exports the sessions of the days from {@code fromEpochDay} to {@code toEpochDay}, both included.
+     */
+    public HistoryExporter(Format format, int fromEpochDay, int toEpochDay) {
+        this.format = format;
+        this.fromEpochDay = fromEpochDay;
+        this.toEpochDay = toEpochDay;
+    }
+
+    public HistoryExporter(Format format) {
+        this(format, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Writes the export on a background thread and completes with the number of sessions written.
+     * The target is only replaced once the export is complete; a cancelled export leaves it untouched
+     * and completes with -1. The listener is called about a hundred times over the whole export.
+     */
+    public CompletableFuture<Integer> export(SessionJournal journal, Path target, ProgressListener listener) {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                future.complete(write(journal, target, listener));
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }, "history-export");
+        thread.setDaemon(true);
+        thread.start();
+        return future;
+    }
+
+    private int write(SessionJournal journal, Path target, ProgressListener listener) throws IOException {
+        int records = journal.size();
+        Clears clears = new Clears();
+        for (int from = 0; from < records && !cancelled; from += CHUNK_RECORDS) {
+            clears.index = from;
+            journal.forEach(from, from + CHUNK_RECORDS, clears);
+        }
+
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        Encoder encoder = new Encoder(clears);
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            encoder.channel = channel;
+            encoder.header();
+            int percent = -1;
+            for (int from = 0; from < records && !cancelled; from += CHUNK_RECORDS) {
+                encoder.index = from;
+                journal.forEach(from, from + CHUNK_RECORDS, encoder);
+                if (encoder.failure != null) {
+                    throw encoder.failure;
+                }
+                int done = Math.min(from + CHUNK_RECORDS, records);
+                if (done * 100L / records != percent) {
+                    percent = (int) (done * 100L / records);
+                    listener.progress(done, records);
+                }
+            }
+            encoder.flush();
+            if (format == Format.BINARY) {
+                channel.write(ByteBuffer.allocate(8).putLong(0, encoder.sessions), 8);
+            }
+        }
+        if (cancelled) {
+            Files.deleteIfExists(part);
+            return -1;
+        }
+        Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        return encoder.sessions;
+    }
+
+    public interface ProgressListener {
+        void progress(int done, int total);
+    }
+
+    // first pass: where the last "clear all" is, and the last "clear day" of every cleared day
+    static class Clears implements SessionJournal.RecordVisitor {
+        int index; // of the next record visited
+        private int lastClearAll = -1;
+        private final Map<Integer, Integer> lastClearDay = new HashMap<>();
+
+        @Override
+        public void visit(long startMillis, long endMillis, int epochDay, int flags) {
+            if (flags == SessionJournal.FLAG_CLEAR_ALL) {
+                lastClearAll = index;
+            } else if (flags == SessionJournal.FLAG_CLEAR_DAY) {
+                lastClearDay.put(epochDay, index);
+            }
+            index++;
+        }
+
+        boolean isCleared(int index, int epochDay) {
+            return index < lastClearAll || index < lastClearDay.getOrDefault(epochDay, -1);
+        }
+    }
+
+    // second pass: encodes the sessions that survived into the buffer
+    private class Encoder implements SessionJournal.RecordVisitor {
+        private final Clears clears;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private FileChannel channel;
+        private int index;
+        private int sessions;
+        private IOException failure;
+
+        Encoder(Clears clears) {
+            this.clears = clears;
+        }
+
+        void header() throws IOException {
+            switch (format) {
+                case CSV:
+                    ascii("date,start_millis,end_millis,duration_millis,imported\n");
+                    break;
+                case BINARY:
+                    buffer.putInt(BINARY_MAGIC).putInt(BINARY_VERSION).putLong(0); // count is written at the end
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void visit(long startMillis, long endMillis, int epochDay, int flags) {
+            int i = index++;
+            if (failure != null || !SessionJournal.isSession(flags) || epochDay < fromEpochDay
+                    || epochDay > toEpochDay || clears.isCleared(i, epochDay)) {
+                return;
+            }
+            try {
+                if (buffer.remaining() < MAX_LINE) {
+                    flush();
+                }
+                boolean imported = (flags & SessionJournal.FLAG_IMPORTED) != 0;
+                switch (format) {
+                    case CSV:
+                        ascii(LocalDate.ofEpochDay(epochDay).toString()).ascii(",");
+                        decimal(startMillis).ascii(",").decimal(endMillis).ascii(",");
+                        decimal(endMillis - startMillis).ascii(",").ascii(imported ? "true\n" : "false\n");
+                        break;
+                    case NDJSON:
+                        ascii("{\"date\":\"").ascii(LocalDate.ofEpochDay(epochDay).toString());
+                        ascii("\",\"start\":").decimal(startMillis);
+                        ascii(",\"end\":").decimal(endMillis);
+                        ascii(",\"durationMillis\":").decimal(endMillis - startMillis);
+                        ascii(",\"imported\":").ascii(imported ? "true}\n" : "false}\n");
+                        break;
+                    default:
+                        buffer.putLong(startMillis).putLong(endMillis).putInt(epochDay).putInt(flags);
+                        break;
+                }
+                sessions++;
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        private Encoder ascii(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                buffer.put((byte) text.charAt(i));
+            }
+            return this;
+        }
+
+        // digits written straight into the buffer, no String per number
+        private Encoder decimal(long value) {
+            if (value < 0) {
+                buffer.put((byte) '-');
+                value = -value;
+            }
+            int start = buffer.position();
+            do {
+                buffer.put((byte) ('0' + value % 10));
+                value /= 10;
+            } while (value != 0);
+            for (int i = start, j = buffer.position() - 1; i < j; i++, j--) {
+                byte b = buffer.get(i);
+                buffer.put(i, buffer.get(j));
+                buffer.put(j, b);
+            }
+            return this;
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
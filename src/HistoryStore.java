@@ -0,0 +1,345 @@
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Columnar store of the daily figures of the session journal, split into one segment per month.
+ * Every segment keeps its sum, longest session, session count and per-weekday sums, so a range
+ * query only looks at single days in the two segments at the ends of the range and takes whole
+ * months from the summaries. Months other than the newest are sealed: only the days that have
+ * sessions are kept, their day numbers delta and varint encoded and their figures in primitive
+ * arrays. Feed it with {@link SessionJournal#subscribe(SessionJournal.RecordVisitor)}.
+ */
+public class HistoryStore implements SessionJournal.RecordVisitor {
+    private int firstMonth; // month key stored at index 0
+    private Segment[] segments = new Segment[0];
+    private int newestMonth = Integer.MIN_VALUE;
+
+    @Override
+    public synchronized void visit(long startMillis, long endMillis, int epochDay, int flags) {
+        if (flags == SessionJournal.FLAG_CLEAR_ALL) {
+            segments = new Segment[0];
+            newestMonth = Integer.MIN_VALUE;
+        } else if (flags == SessionJournal.FLAG_CLEAR_DAY) {
+            Segment segment = segment(monthKey(epochDay));
+            if (segment != null) {
+                segment.clearDay(epochDay - segment.firstDay);
+            }
+        } else if (SessionJournal.isSession(flags)) {
+            int month = monthKey(epochDay);
+            Segment segment = segment(month);
+            if (segment == null) {
+                segment = createSegment(month);
+            }
+            segment.addSession(epochDay - segment.firstDay, endMillis - startMillis);
+            if (month > newestMonth) { // a new month has begun, the older ones are done
+                newestMonth = month;
+                compact();
+            }
+        }
+    }
+
+    /**
+     * Seals every month but the newest. Months reopened by a late import or a clear are sealed
+     * again here.
+     */
+    public synchronized void compact() {
+        for (Segment segment : segments) {
+            if (segment != null && segment.month != newestMonth) {
+                segment.seal();
+            }
+        }
+    }
+
+    // months are numbered from year 0, so that they sort and subtract like days
+    private static int monthKey(int epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+
+    private Segment segment(int month) {
+        int i = month - firstMonth;
+        return i >= 0 && i < segments.length ? segments[i] : null;
+    }
+
+    private Segment createSegment(int month) {
+        if (segments.length == 0) {
+            firstMonth = month;
+            segments = new Segment[12];
+        } else if (month < firstMonth) {
+            Segment[] grown = new Segment[segments.length + (firstMonth - month)];
+            System.arraycopy(segments, 0, grown, firstMonth - month, segments.length);
+            firstMonth = month;
+            segments = grown;
+        } else if (month - firstMonth >= segments.length) {
+            segments = Arrays.copyOf(segments, Math.max(month - firstMonth + 1, segments.length * 2));
+        }
+        Segment segment = new Segment(month);
+        segments[month - firstMonth] = segment;
+        return segment;
+    }
+
+    /**
+     * First day with sessions, {@link Integer#MAX_VALUE} if there is none.
+     */
+    public synchronized int firstDay() {
+        for (Segment segment : segments) {
+            if (segment == null || segment.sessions == 0) {
+                continue;
+            }
+            for (int i = 0, offset = 0; i < segment.activeDays(); i++) {
+                offset = segment.nextOffset(i, offset);
+                if (segment.sessionsAt(i) > 0) {
+                    return segment.firstDay + offset;
+                }
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Total study time of the days from {@code fromEpochDay} to {@code toEpochDay}, both included.
+     */
+    public synchronized long total(int fromEpochDay, int toEpochDay) {
+        long total = 0;
+        for (Segment segment : segments) {
+            if (segment == null || segment.lastDay() < fromEpochDay || segment.firstDay > toEpochDay) {
+                continue;
+            }
+            if (segment.firstDay >= fromEpochDay && segment.lastDay() <= toEpochDay) {
+                total += segment.sum;
+            } else {
+                for (int i = 0, offset = 0; i < segment.activeDays(); i++) {
+                    offset = segment.nextOffset(i, offset);
+                    int day = segment.firstDay + offset;
+                    if (day >= fromEpochDay && day <= toEpochDay) {
+                        total += segment.totalAt(i);
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    public synchronized long longestSession(int fromEpochDay, int toEpochDay) {
+        long longest = 0;
+        for (Segment segment : segments) {
+            if (segment == null || segment.longest <= longest || segment.lastDay() < fromEpochDay
+                    || segment.firstDay > toEpochDay) {
+                continue; // a month that cannot beat the current longest is skipped unread
+            }
+            if (segment.firstDay >= fromEpochDay && segment.lastDay() <= toEpochDay) {
+                longest = segment.longest;
+            } else {
+                for (int i = 0, offset = 0; i < segment.activeDays(); i++) {
+                    offset = segment.nextOffset(i, offset);
+                    int day = segment.firstDay + offset;
+                    if (day >= fromEpochDay && day <= toEpochDay) {
+                        longest = Math.max(longest, segment.longestAt(i));
+                    }
+                }
+            }
+        }
+        return longest;
+    }
+
+    public synchronized int sessions(int fromEpochDay, int toEpochDay) {
+        int sessions = 0;
+        for (Segment segment : segments) {
+            if (segment == null || segment.lastDay() < fromEpochDay || segment.firstDay > toEpochDay) {
+                continue;
+            }
+            if (segment.firstDay >= fromEpochDay && segment.lastDay() <= toEpochDay) {
+                sessions += segment.sessions;
+            } else {
+                for (int i = 0, offset = 0; i < segment.activeDays(); i++) {
+                    offset = segment.nextOffset(i, offset);
+                    int day = segment.firstDay + offset;
+                    if (day >= fromEpochDay && day <= toEpochDay) {
+                        sessions += segment.sessionsAt(i);
+                    }
+                }
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * Average study time per weekday over the range, indexed by {@link java.time.DayOfWeek#ordinal()}.
+     * Days without sessions count as zero.
+     */
+    public synchronized long[] weekdayAverages(int fromEpochDay, int toEpochDay) {
+        long[] sums = new long[7];
+        long[] averages = new long[7];
+        if (toEpochDay < fromEpochDay) {
+            return averages;
+        }
+        for (Segment segment : segments) {
+            if (segment == null || segment.lastDay() < fromEpochDay || segment.firstDay > toEpochDay) {
+                continue;
+            }
+            if (segment.firstDay >= fromEpochDay && segment.lastDay() <= toEpochDay) {
+                for (int w = 0; w < 7; w++) {
+                    sums[w] += segment.weekdaySums[w];
+                }
+            } else {
+                for (int i = 0, offset = 0; i < segment.activeDays(); i++) {
+                    offset = segment.nextOffset(i, offset);
+                    int day = segment.firstDay + offset;
+                    if (day >= fromEpochDay && day <= toEpochDay) {
+                        sums[weekday(day)] += segment.totalAt(i);
+                    }
+                }
+            }
+        }
+        long days = (long) toEpochDay - fromEpochDay + 1;
+        int firstWeekday = weekday(fromEpochDay);
+        for (int w = 0; w < 7; w++) {
+            long count = days / 7 + (Math.floorMod(w - firstWeekday, 7) < days % 7 ? 1 : 0);
+            averages[w] = count == 0 ? 0 : sums[w] / count;
+        }
+        return averages;
+    }
+
+    // Monday is 0, 1970-01-01 was a Thursday
+    private static int weekday(int epochDay) {
+        return Math.floorMod(epochDay + 3, 7);
+    }
+
+    /**
+     * One month. While open the figures are dense arrays indexed by day of the month; once sealed
+     * only the days with sessions remain, their numbers delta and varint encoded in {@code days}.
+     */
+    private static class Segment {
+        private final int month;
+        private final int firstDay; // epoch-day of the 1st
+        private final int length; // days in the month
+        // summaries
+        private long sum;
+        private long longest;
+        private int sessions;
+        private final long[] weekdaySums = new long[7];
+        // open form, null while sealed
+        private long[] totalsByDay;
+        private long[] longestByDay;
+        private int[] sessionsByDay;
+        // sealed form, null while open
+        private byte[] days;
+        private long[] totals;
+        private long[] longestSessions;
+        private int[] sessionCounts;
+
+        Segment(int month) {
+            this.month = month;
+            LocalDate first = LocalDate.of(month / 12, month % 12 + 1, 1);
+            this.firstDay = (int) first.toEpochDay();
+            this.length = first.lengthOfMonth();
+            open();
+        }
+
+        int lastDay() {
+            return firstDay + length - 1;
+        }
+
+        void addSession(int day, long length) {
+            open();
+            totalsByDay[day] += length;
+            longestByDay[day] = Math.max(longestByDay[day], length);
+            sessionsByDay[day]++;
+            sum += length;
+            longest = Math.max(longest, length);
+            sessions++;
+            weekdaySums[weekday(firstDay + day)] += length;
+        }
+
+        void clearDay(int day) {
+            open();
+            if (sessionsByDay[day] == 0) {
+                return;
+            }
+            sum -= totalsByDay[day];
+            sessions -= sessionsByDay[day];
+            weekdaySums[weekday(firstDay + day)] -= totalsByDay[day];
+            totalsByDay[day] = 0;
+            longestByDay[day] = 0;
+            sessionsByDay[day] = 0;
+            longest = 0;
+            for (long value : longestByDay) {
+                longest = Math.max(longest, value);
+            }
+        }
+
+        private void open() {
+            if (totalsByDay != null) {
+                return;
+            }
+            totalsByDay = new long[length];
+            longestByDay = new long[length];
+            sessionsByDay = new int[length];
+            if (days != null) {
+                for (int i = 0, day = 0; i < totals.length; i++) {
+                    day += days[i];
+                    totalsByDay[day] = totals[i];
+                    longestByDay[day] = longestSessions[i];
+                    sessionsByDay[day] = sessionCounts[i];
+                }
+                days = null;
+                totals = null;
+                longestSessions = null;
+                sessionCounts = null;
+            }
+        }
+
+        void seal() {
+            if (totalsByDay == null) {
+                return;
+            }
+            int active = 0;
+            for (int count : sessionsByDay) {
+                active += count > 0 ? 1 : 0;
+            }
+            byte[] encoded = new byte[active]; // day deltas of a month always fit into one varint byte
+            totals = new long[active];
+            longestSessions = new long[active];
+            sessionCounts = new int[active];
+            for (int day = 0, i = 0, previous = 0; day < length; day++) {
+                if (sessionsByDay[day] > 0) {
+                    encoded[i] = (byte) (day - previous);
+                    previous = day;
+                    totals[i] = totalsByDay[day];
+                    longestSessions[i] = longestByDay[day];
+                    sessionCounts[i] = sessionsByDay[day];
+                    i++;
+                }
+            }
+            days = encoded;
+            totalsByDay = null;
+            longestByDay = null;
+            sessionsByDay = null;
+        }
+
+        // entries to go through: every day while open, the days with sessions once sealed
+        int activeDays() {
+            return totalsByDay != null ? length : totals.length;
+        }
+
+        /**
+         * Day of the month, counted from 0, of the i-th entry given the day of the entry before it.
+         * Sealed days are decoded on the way, entries are always visited in order.
+         */
+        int nextOffset(int i, int previous) {
+            return totalsByDay != null ? i : previous + days[i];
+        }
+
+        long totalAt(int i) {
+            return totalsByDay != null ? totalsByDay[i] : totals[i];
+        }
+
+        long longestAt(int i) {
+            return totalsByDay != null ? longestByDay[i] : longestSessions[i];
+        }
+
+        int sessionsAt(int i) {
+            return totalsByDay != null ? sessionsByDay[i] : sessionCounts[i];
+        }
+    }
+}
@@ -0,0 +1,166 @@
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-day figures kept in Preferences by earlier versions, e.g. "total_today(2021-04-12)", four
+ * keys a day. They are imported into the journal once; after that {@link #compact} rolls the days
+ * older than the retention horizon into one "month_summary(2021-04)" record per month and removes
+ * them, so the node stays bounded however long the application has been used.
+ */
+public class LegacyPreferences {
+    public static final int DEFAULT_RETENTION_DAYS = 90;
+    static final String SESSIONS_KEY = "number_of_sessions(";
+    static final String LAST_SESSION_KEY = "last_session(";
+    static final String LONGEST_SESSION_KEY = "longest_session(";
+    static final String TOTAL_TIME_TODAY_KEY = "total_today(";
+    private static final String[] DAY_KEYS = {SESSIONS_KEY, LAST_SESSION_KEY, LONGEST_SESSION_KEY, TOTAL_TIME_TODAY_KEY};
+    static final String MONTH_SUMMARY_KEY = "month_summary("; // "sessions,longest millis,total millis"
+    static final String RECLAIMED_KEY = "compacted_keys"; // keys removed by compaction so far
+
+    private final PreferenceCache preferences;
+
+    public LegacyPreferences(PreferenceCache preferences) {
+        this.preferences = preferences;
+    }
+
+    /**
+     * Imports the days and the month summaries into the journal, the keys are left in place.
+     * A month summary becomes one day on the first of the month.
+     */
+    public void migrate(SessionJournal journal) throws IOException {
+        for (String key : preferences.keys()) {
+            String date = argument(key, TOTAL_TIME_TODAY_KEY);
+            if (date != null) {
+                try {
+                    journal.importDay((int) LocalDate.parse(date).toEpochDay(),
+                            preferences.getInt(SESSIONS_KEY + date + ")", 1),
+                            duration(LAST_SESSION_KEY + date + ")"), duration(LONGEST_SESSION_KEY + date + ")"),
+                            duration(key));
+                } catch (DateTimeParseException e) {
+                    // not a value written by this application
+                }
+            }
+            String month = argument(key, MONTH_SUMMARY_KEY);
+            if (month != null) {
+                try {
+                    long[] summary = summary(key);
+                    journal.importDay((int) YearMonth.parse(month).atDay(1).toEpochDay(), (int) summary[0],
+                            summary[1], summary[1], summary[2]);
+                } catch (DateTimeParseException | NumberFormatException e) {
+                    // not a value written by this application
+                }
+            }
+        }
+    }
+
+    /**
+     * Rolls the days before {@code today - retentionDays} into month summaries, merged with any
+     * summary the month already has, and removes their keys. Returns the number of keys reclaimed,
+     * which is also added to the running total kept under {@value #RECLAIMED_KEY}.
+     */
+    public synchronized int compact(LocalDate today, int retentionDays) {
+        LocalDate horizon = today.minusDays(retentionDays);
+        Map<YearMonth, long[]> months = new HashMap<>();
+        int removed = 0;
+        for (String key : preferences.keys()) {
+            String date = argument(key, TOTAL_TIME_TODAY_KEY);
+            LocalDate day;
+            try {
+                day = date == null ? null : LocalDate.parse(date);
+            } catch (DateTimeParseException e) {
+                continue;
+            }
+            if (day == null || !day.isBefore(horizon)) {
+                continue;
+            }
+            long[] month = months.computeIfAbsent(YearMonth.from(day), m -> new long[3]);
+            try {
+                month[0] += preferences.getInt(SESSIONS_KEY + date + ")", 1);
+                month[1] = Math.max(month[1], duration(LONGEST_SESSION_KEY + date + ")"));
+                month[2] += duration(key);
+            } catch (DateTimeParseException e) {
+                // an unreadable day is dropped along with its keys
+            }
+            for (String prefix : DAY_KEYS) {
+                if (preferences.get(prefix + date + ")", null) != null) {
+                    preferences.remove(prefix + date + ")");
+                    removed++;
+                }
+            }
+        }
+        // days whose total was never written leave keys of the other kinds behind
+        for (String key : preferences.keys()) {
+            for (String prefix : DAY_KEYS) {
+                String date = argument(key, prefix);
+                if (date != null && isBefore(date, horizon)) {
+                    preferences.remove(key);
+                    removed++;
+                }
+            }
+        }
+
+        int added = 0;
+        for (Map.Entry<YearMonth, long[]> entry : months.entrySet()) {
+            String key = MONTH_SUMMARY_KEY + entry.getKey() + ")";
+            long[] month = entry.getValue();
+            if (preferences.get(key, null) == null) {
+                added++;
+            } else {
+                try {
+                    long[] previous = summary(key);
+                    month[0] += previous[0];
+                    month[1] = Math.max(month[1], previous[1]);
+                    month[2] += previous[2];
+                } catch (NumberFormatException e) {
+                    // replaced by the new summary
+                }
+            }
+            preferences.put(key, month[0] + "," + month[1] + "," + month[2]);
+        }
+
+        int reclaimed = removed - added;
+        if (reclaimed != 0) {
+            preferences.put(RECLAIMED_KEY, Long.toString(reclaimedKeys() + reclaimed));
+        }
+        return reclaimed;
+    }
+
+    // keys removed by every compaction so far
+    public long reclaimedKeys() {
+        try {
+            return Long.parseLong(preferences.get(RECLAIMED_KEY, "0"));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // "2021-04-12" of "total_today(2021-04-12)", null if the key is not of that kind
+    private static String argument(String key, String prefix) {
+        return key.startsWith(prefix) && key.endsWith(")") ? key.substring(prefix.length(), key.length() - 1) : null;
+    }
+
+    private static boolean isBefore(String date, LocalDate horizon) {
+        try {
+            return LocalDate.parse(date).isBefore(horizon);
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private long duration(String key) {
+        return Duration.parse(preferences.get(key, "PT0S")).toMillis();
+    }
+
+    private long[] summary(String key) {
+        String[] fields = preferences.get(key, "0,0,0").split(",");
+        if (fields.length != 3) {
+            throw new NumberFormatException("Invalid month summary: " + key);
+        }
+        return new long[]{Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2])};
+    }
+}
@@ -0,0 +1,398 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Notes of any size, kept as content-addressed chunks. The UTF-8 text is cut where a rolling hash
+ * of its content says so, so an edit only changes the chunks around it and the others keep their
+ * SHA-256 address. Saving appends the chunks the file does not have yet and then replaces the small
+ * index listing the addresses of the text in order; a crash leaves the previous index and chunks intact.
+ * <pre>
+ * notes.chunks  magic "SNCK", version, then records: address (32 bytes), length, bytes
+ * notes.index   magic "SNIX", version, chunk count, then the addresses in order
+ * </pre>
+ * Chunks no longer referenced are dropped by rewriting the chunk file once they outweigh the live ones.
+ */
+public class NotesStore implements Closeable {
+    public static final long SAVE_DELAY_MILLIS = 1000;
+    private static final int CHUNKS_MAGIC = 0x534E434B; // "SNCK"
+    private static final int INDEX_MAGIC = 0x534E4958; // "SNIX"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER = 8;
+    private static final int ADDRESS_SIZE = 32;
+    private static final int RECORD_HEADER = ADDRESS_SIZE + 4;
+    private static final int MIN_CHUNK = 2 * 1024;
+    private static final int MAX_CHUNK = 64 * 1024;
+    private static final long BOUNDARY_MASK = (1L << 13) - 1; // about 8 KB between cuts on average
+    private static final long[] GEAR = new long[256]; // random values of the rolling hash, fixed forever
+    static {
+        SplittableRandom random = new SplittableRandom(0x5EED);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final Path chunksPath;
+    private final Path indexPath;
+    private final ScheduledExecutorService scheduler;
+    private final Executor ioExecutor;
+    private final Executor uiExecutor;
+    private FileChannel chunks;
+    private final Map<ByteBuffer, long[]> locations = new HashMap<>(); // address -> offset, length of the bytes
+    private List<ByteBuffer> index = new ArrayList<>(); // addresses of the saved text
+    private long liveBytes;
+    private long deadBytes;
+    // the files and what is known of them are guarded by writeLock, the autosave state by the monitor,
+    // which is only ever held for a moment as the UI takes it on every change
+    private final Object writeLock = new Object();
+    private Supplier<String> text; // read on the UI executor when an autosave is due
+    private boolean saveScheduled;
+    private String pending; // read from the UI, not saved yet
+
+    private NotesStore(Path dir, ScheduledExecutorService scheduler, Executor ioExecutor, Executor uiExecutor) {
+        this.chunksPath = dir.resolve("notes.chunks");
+        this.indexPath = dir.resolve("notes.index");
+        this.scheduler = scheduler;
+        this.ioExecutor = ioExecutor;
+        this.uiExecutor = uiExecutor;
+    }
+
+    /**
+     * Opens the notes in the directory, creating it if needed. Chunks torn by a crash are discarded.
+     * The scheduler only times the autosaves, they are written on the I/O executor.
+     */
+    public static NotesStore open(Path dir, ScheduledExecutorService scheduler, Executor ioExecutor,
+                                  Executor uiExecutor) throws IOException {
+        Files.createDirectories(dir);
+        NotesStore store = new NotesStore(dir, scheduler, ioExecutor, uiExecutor);
+        store.chunks = FileChannel.open(store.chunksPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            store.scanChunks();
+            store.readIndex();
+        } catch (IOException e) {
+            store.chunks.close();
+            throw e;
+        }
+        return store;
+    }
+
+    private void scanChunks() throws IOException {
+        long size = chunks.size();
+        if (size < FILE_HEADER) {
+            chunks.truncate(0);
+            chunks.write(ByteBuffer.allocate(FILE_HEADER).putInt(CHUNKS_MAGIC).putInt(VERSION).flip(), 0);
+            return;
+        }
+        ByteBuffer header = read(0, FILE_HEADER);
+        if (header.getInt(0) != CHUNKS_MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Unsupported notes format");
+        }
+        MessageDigest digest = sha256();
+        long offset = FILE_HEADER;
+        while (offset + RECORD_HEADER <= size) {
+            ByteBuffer record = read(offset, RECORD_HEADER);
+            int length = record.getInt(ADDRESS_SIZE);
+            if (length < 0 || offset + RECORD_HEADER + length > size) {
+                break;
+            }
+            byte[] address = new byte[ADDRESS_SIZE];
+            record.get(address);
+            ByteBuffer bytes = read(offset + RECORD_HEADER, length);
+            digest.update(bytes);
+            if (!Arrays.equals(address, digest.digest())) {
+                break; // a write torn by a crash, everything after it is lost as well
+            }
+            locations.put(ByteBuffer.wrap(address), new long[]{offset + RECORD_HEADER, length});
+            offset += RECORD_HEADER + length;
+        }
+        if (offset < size) {
+            chunks.truncate(offset);
+        }
+    }
+
+    private void readIndex() throws IOException {
+        if (!Files.exists(indexPath)) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(indexPath));
+        if (buffer.remaining() < 12 || buffer.getInt() != INDEX_MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Unsupported notes index");
+        }
+        int count = buffer.getInt();
+        if (count < 0 || buffer.remaining() != count * ADDRESS_SIZE) {
+            throw new IOException("Truncated notes index");
+        }
+        List<ByteBuffer> addresses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] address = new byte[ADDRESS_SIZE];
+            buffer.get(address);
+            if (!locations.containsKey(ByteBuffer.wrap(address))) {
+                throw new IOException("Notes chunk missing");
+            }
+            addresses.add(ByteBuffer.wrap(address));
+        }
+        index = addresses;
+        countBytes();
+    }
+
+    private void countBytes() {
+        long total = 0;
+        for (long[] location : locations.values()) {
+            total += RECORD_HEADER + location[1];
+        }
+        liveBytes = 0;
+        for (ByteBuffer address : new HashSet<>(index)) {
+            liveBytes += RECORD_HEADER + locations.get(address)[1];
+        }
+        deadBytes = total - liveBytes;
+    }
+
+    public boolean isEmpty() {
+        synchronized (writeLock) {
+            return index.isEmpty();
+        }
+    }
+
+    /**
+     * Reads the saved text.
+     */
+    public String load() throws IOException {
+        synchronized (writeLock) {
+            long length = 0;
+            for (ByteBuffer address : index) {
+                length += locations.get(address)[1];
+            }
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Notes too large");
+            }
+            ByteBuffer text = ByteBuffer.allocate((int) length);
+            for (ByteBuffer address : index) {
+                long[] location = locations.get(address);
+                text.put(read(location[0], (int) location[1]));
+            }
+            return new String(text.array(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Saves the text, writing only the chunks that are not stored yet. Returns the number of chunks written.
+     */
+    public int save(String text) throws IOException {
+        synchronized (writeLock) {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            MessageDigest digest = sha256();
+            List<ByteBuffer> addresses = new ArrayList<>();
+            long end = chunks.size();
+            int written = 0;
+            for (int from = 0, to; from < bytes.length; from = to) {
+                to = boundary(bytes, from);
+                digest.update(bytes, from, to - from);
+                ByteBuffer address = ByteBuffer.wrap(digest.digest());
+                addresses.add(address);
+                if (!locations.containsKey(address)) {
+                    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + to - from);
+                    record.put(address.duplicate()).putInt(to - from).put(bytes, from, to - from).flip();
+                    write(record, end);
+                    locations.put(address, new long[]{end + RECORD_HEADER, to - from});
+                    end += record.capacity();
+                    written++;
+                }
+            }
+            if (written > 0) {
+                chunks.force(false); // the chunks are on the disk before an index refers to them
+            }
+            writeIndex(addresses);
+            index = addresses;
+            countBytes();
+            if (deadBytes > liveBytes + MAX_CHUNK) {
+                compact();
+            }
+            return written;
+        }
+    }
+
+    // end of the chunk starting at from: where the rolling hash hits the mask, within the size limits
+    private static int boundary(byte[] bytes, int from) {
+        int limit = Math.min(bytes.length, from + MAX_CHUNK);
+        if (limit - from <= MIN_CHUNK) {
+            return limit;
+        }
+        long hash = 0;
+        for (int i = from + MIN_CHUNK; i < limit; i++) {
+            hash = (hash << 1) + GEAR[bytes[i] & 0xFF];
+            if ((hash & BOUNDARY_MASK) == 0) {
+                return i + 1;
+            }
+        }
+        return limit;
+    }
+
+    private void writeIndex(List<ByteBuffer> addresses) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(12 + addresses.size() * ADDRESS_SIZE);
+        buffer.putInt(INDEX_MAGIC).putInt(VERSION).putInt(addresses.size());
+        for (ByteBuffer address : addresses) {
+            buffer.put(address.duplicate());
+        }
+        Path temp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(temp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // rewrites the chunk file with the chunks of the saved text only
+    private void compact() throws IOException {
+        Path temp = chunksPath.resolveSibling(chunksPath.getFileName() + ".tmp");
+        Map<ByteBuffer, long[]> moved = new HashMap<>();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.allocate(FILE_HEADER).putInt(CHUNKS_MAGIC).putInt(VERSION).flip());
+            long end = FILE_HEADER;
+            for (ByteBuffer address : index) {
+                if (moved.containsKey(address)) {
+                    continue;
+                }
+                long[] location = locations.get(address);
+                ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + (int) location[1]);
+                record.put(address.duplicate()).putInt((int) location[1]).put(read(location[0], (int) location[1])).flip();
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+                moved.put(address, new long[]{end + RECORD_HEADER, location[1]});
+                end += RECORD_HEADER + location[1];
+            }
+            channel.force(false);
+        }
+        chunks.close();
+        Files.move(temp, chunksPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        chunks = FileChannel.open(chunksPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        locations.clear();
+        locations.putAll(moved);
+        countBytes();
+    }
+
+    /**
+     * Saves the text in the background shortly after the first change since the last save. The
+     * supplier is called on the UI executor once the save is due, so the text is read only once
+     * however many changes there were, and the chunks are written on the I/O executor.
+     */
+    public synchronized void saveLater(Supplier<String> text) {
+        this.text = text;
+        if (!saveScheduled) {
+            saveScheduled = true;
+            scheduler.schedule(() -> uiExecutor.execute(this::readText), SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // on the UI executor: reads the text, then hands it to the I/O executor
+    private void readText() {
+        Supplier<String> supplier;
+        synchronized (this) {
+            if (!saveScheduled) {
+                return; // saved by close() in the meantime
+            }
+            saveScheduled = false;
+            supplier = text;
+        }
+        String snapshot = supplier.get();
+        synchronized (this) {
+            pending = snapshot;
+        }
+        ioExecutor.execute(this::savePending);
+    }
+
+    // on the I/O executor: the text is hashed and written outside the monitor the UI takes, the
+    // pending text is taken under writeLock so an older one is never saved after a newer one
+    private void savePending() {
+        synchronized (writeLock) {
+            String snapshot;
+            synchronized (this) {
+                if (pending == null) {
+                    return;
+                }
+                snapshot = pending;
+                pending = null;
+            }
+            try {
+                save(snapshot);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Saves what has not been saved yet on the calling thread, which must be the UI thread, and
+     * closes the store.
+     */
+    @Override
+    public void close() throws IOException {
+        String snapshot;
+        synchronized (this) {
+            if (saveScheduled) {
+                saveScheduled = false;
+                pending = text.get();
+            }
+            snapshot = pending;
+            pending = null;
+        }
+        synchronized (writeLock) { // after a save in progress
+            try {
+                if (snapshot != null) {
+                    save(snapshot);
+                }
+            } finally {
+                chunks.close();
+            }
+        }
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (chunks.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of the notes");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private void write(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            chunks.write(buffer, position + buffer.position());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JVM has SHA-256
+        }
+    }
+}
@@ -0,0 +1,133 @@
+import java.io.Closeable;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+/**
+ * Write-behind cache of a Preferences node. The node is read once when the cache is opened, after
+ * that every read is served from memory and writes only mark their key dirty. Dirty keys are
+ * written in one batch on the background scheduler, so a key written many times between two
+ * flushes costs a single put, and the calling thread never waits for the backing store.
+ * {@link #close()} and JVM shutdown write whatever is still pending and sync the node.
+ */
+public class PreferenceCache implements Closeable {
+    public static final long DEFAULT_FLUSH_MILLIS = 5000;
+
+    private final Preferences node;
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet(); // keys to write, or to remove if they have no value
+    private final ScheduledFuture<?> flusher;
+    private final Thread shutdownHook = new Thread(this::flush, "preferences-flush");
+    private boolean unsynced; // the last sync of the node failed
+
+    private PreferenceCache(Preferences node, ScheduledExecutorService scheduler, long flushMillis) {
+        this.node = node;
+        this.flusher = scheduler.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reads the node into memory and starts flushing it on the scheduler every {@code flushMillis}.
+     */
+    public static PreferenceCache open(Preferences node, ScheduledExecutorService scheduler, long flushMillis)
+            throws BackingStoreException {
+        String[] keys = node.keys();
+        PreferenceCache cache = new PreferenceCache(node, scheduler, flushMillis);
+        for (String key : keys) {
+            String value = node.get(key, null);
+            if (value != null) {
+                cache.values.put(key, value);
+            }
+        }
+        Runtime.getRuntime().addShutdownHook(cache.shutdownHook);
+        return cache;
+    }
+
+    public String get(String key, String def) {
+        return values.getOrDefault(key, def);
+    }
+
+    public int getInt(String key, int def) {
+        String value = values.get(key);
+        if (value == null) {
+            return def;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    public void put(String key, String value) {
+        values.put(key, value);
+        dirty.add(key);
+    }
+
+    public void putInt(String key, int value) {
+        put(key, Integer.toString(value));
+    }
+
+    public void remove(String key) {
+        values.remove(key);
+        dirty.add(key);
+    }
+
+    public String[] keys() {
+        return values.keySet().toArray(new String[0]);
+    }
+
+    public void clear() {
+        for (String key : values.keySet()) {
+            remove(key);
+        }
+    }
+
+    /**
+     * Writes the dirty keys to the node and syncs it. A key written again while the flush is
+     * running stays dirty for the next one.
+     */
+    public synchronized void flush() {
+        if (dirty.isEmpty() && !unsynced) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        SchedulerEvents.PreferencesFlush event = new SchedulerEvents.PreferencesFlush();
+        event.begin();
+        for (String key : dirty) {
+            event.keys++;
+            dirty.remove(key);
+            String value = values.get(key);
+            if (value == null) {
+                node.remove(key);
+            } else {
+                node.put(key, value);
+            }
+        }
+        try {
+            node.flush();
+            unsynced = false;
+        } catch (BackingStoreException e) {
+            unsynced = true; // the values are in the node, the next flush tries to sync them again
+            e.printStackTrace();
+        }
+        event.synced = !unsynced;
+        event.commit();
+        SchedulerMetrics.get().persistence.record(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public void close() {
+        flusher.cancel(false);
+        flush();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // already shutting down, the hook flushes again and finds nothing to do
+        }
+    }
+}
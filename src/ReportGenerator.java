@@ -0,0 +1,316 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reports over any range of days: per-week, per-month and per-weekday summaries and the trend of
+ * the weekly totals. The range is split into months that are summarized in parallel on a fork-join
+ * pool, and the summaries are merged pairwise, a week that spans two months being joined where
+ * they meet. The summary of a whole month that is over is cached until a record of the journal
+ * touches that month again, so a report over years of old data only summarizes the current month.
+ * Feed it with {@link SessionJournal#subscribe(SessionJournal.RecordVisitor)}, after the
+ * {@link RollupIndex} it reads the days from.
+ */
+public class ReportGenerator implements SessionJournal.RecordVisitor {
+    private final RollupIndex rollups;
+    private final ForkJoinPool pool;
+    private final Map<Integer, Partial> months = new ConcurrentHashMap<>(); // cached summaries of closed months
+    private final AtomicLong changes = new AtomicLong(); // a summary computed across a change is not cached
+
+    public ReportGenerator(RollupIndex rollups, ForkJoinPool pool) {
+        this.rollups = rollups;
+        this.pool = pool;
+    }
+
+    @Override
+    public void visit(long startMillis, long endMillis, int epochDay, int flags) {
+        changes.incrementAndGet();
+        if (flags == SessionJournal.FLAG_CLEAR_ALL) {
+            months.clear();
+        } else {
+            months.remove(monthKey(epochDay));
+        }
+    }
+
+    // months are numbered from year 0, as in HistoryStore
+    private static int monthKey(int epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+
+    private static int firstDayOfMonth(int month) {
+        return (int) LocalDate.of(month / 12, month % 12 + 1, 1).toEpochDay();
+    }
+
+    /**
+     * The report of the days from {@code fromEpochDay} to {@code toEpochDay}, both included.
+     * Days after {@code todayEpochDay} are not over, the months they are in are never cached.
+     */
+    public Report report(int fromEpochDay, int toEpochDay, int todayEpochDay) {
+        if (fromEpochDay > toEpochDay) {
+            return new Report(fromEpochDay, toEpochDay, Partial.EMPTY);
+        }
+        int firstMonth = monthKey(fromEpochDay);
+        int lastMonth = monthKey(toEpochDay);
+        Partial partial = pool.invoke(new Summarize(firstMonth, lastMonth + 1, fromEpochDay, toEpochDay, todayEpochDay));
+        return new Report(fromEpochDay, toEpochDay, partial);
+    }
+
+    // summaries of the months from firstMonth up to, not including, endMonth, clipped to the range
+    private class Summarize extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final int firstMonth;
+        private final int endMonth;
+        private final int fromEpochDay;
+        private final int toEpochDay;
+        private final int todayEpochDay;
+
+        Summarize(int firstMonth, int endMonth, int fromEpochDay, int toEpochDay, int todayEpochDay) {
+            this.firstMonth = firstMonth;
+            this.endMonth = endMonth;
+            this.fromEpochDay = fromEpochDay;
+            this.toEpochDay = toEpochDay;
+            this.todayEpochDay = todayEpochDay;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (endMonth - firstMonth == 1) {
+                return month(firstMonth);
+            }
+            int middle = (firstMonth + endMonth) >>> 1;
+            Summarize left = new Summarize(firstMonth, middle, fromEpochDay, toEpochDay, todayEpochDay);
+            Summarize right = new Summarize(middle, endMonth, fromEpochDay, toEpochDay, todayEpochDay);
+            left.fork();
+            Partial after = right.compute();
+            return left.join().merge(after);
+        }
+
+        private Partial month(int month) {
+            int first = firstDayOfMonth(month);
+            int last = firstDayOfMonth(month + 1) - 1;
+            boolean whole = first >= fromEpochDay && last <= toEpochDay;
+            if (!whole) { // an end of the range, never cached
+                return summarize(month, Math.max(first, fromEpochDay), Math.min(last, toEpochDay));
+            }
+            Partial cached = months.get(month);
+            if (cached != null) {
+                return cached;
+            }
+            long before = changes.get();
+            Partial partial = summarize(month, first, last);
+            if (last < todayEpochDay) {
+                // checked under the lock of the entry, a visit counts before it removes, so it
+                // either sees the change or removes what was stored
+                months.compute(month, (key, current) -> changes.get() == before ? partial : current);
+            }
+            return partial;
+        }
+    }
+
+    private Partial summarize(int month, int first, int last) {
+        int days = last - first + 1;
+        long[] totals = new long[days];
+        int[] sessions = new int[days];
+        long[] longest = new long[days];
+        rollups.dayFigures(first, totals, sessions, longest);
+
+        Partial partial = new Partial();
+        Period.Builder week = null;
+        Period.Builder all = new Period.Builder(first);
+        for (int d = 0; d < days; d++) {
+            int day = first + d;
+            if (week == null || weekKey(day) != weekKey(week.firstDay)) {
+                if (week != null) {
+                    partial.weeks.add(week.build(day - 1));
+                }
+                week = new Period.Builder(day);
+            }
+            week.add(totals[d], sessions[d], longest[d]);
+            all.add(totals[d], sessions[d], longest[d]);
+            int weekday = Math.floorMod(day + 3, 7); // epoch-day 0 was a Thursday
+            partial.weekdayTotals[weekday] += totals[d];
+            partial.weekdayDays[weekday]++;
+        }
+        partial.weeks.add(week.build(last));
+        partial.months.add(all.build(last));
+        return partial;
+    }
+
+    // weeks start on Monday, as in RollupIndex
+    private static int weekKey(int epochDay) {
+        return Math.floorDiv(epochDay + 3, 7);
+    }
+
+    // the summary of consecutive days, merged with the one of the days right after it
+    private static class Partial {
+        static final Partial EMPTY = new Partial();
+
+        final List<Period> weeks = new ArrayList<>();
+        final List<Period> months = new ArrayList<>();
+        final long[] weekdayTotals = new long[7];
+        final int[] weekdayDays = new int[7];
+
+        // a new summary, cached ones are shared and never change
+        Partial merge(Partial after) {
+            Partial merged = new Partial();
+            merged.weeks.addAll(weeks);
+            if (!weeks.isEmpty() && !after.weeks.isEmpty()
+                    && weekKey(weeks.get(weeks.size() - 1).firstDay) == weekKey(after.weeks.get(0).firstDay)) {
+                merged.weeks.set(merged.weeks.size() - 1, merged.weeks.get(merged.weeks.size() - 1).merge(after.weeks.get(0)));
+                merged.weeks.addAll(after.weeks.subList(1, after.weeks.size()));
+            } else {
+                merged.weeks.addAll(after.weeks);
+            }
+            merged.months.addAll(months);
+            merged.months.addAll(after.months);
+            for (int i = 0; i < 7; i++) {
+                merged.weekdayTotals[i] = weekdayTotals[i] + after.weekdayTotals[i];
+                merged.weekdayDays[i] = weekdayDays[i] + after.weekdayDays[i];
+            }
+            return merged;
+        }
+    }
+
+    /**
+     * Figures of consecutive days. The first and last week or month of a report are cut to its
+     * range, {@link #days} tells how many of their days it covers.
+     */
+    public static class Period {
+        public final int firstDay;
+        public final int lastDay;
+        public final int days;
+        public final long totalMillis;
+        public final int sessions;
+        public final long longestMillis;
+        public final int activeDays; // days with sessions
+
+        Period(int firstDay, int lastDay, long totalMillis, int sessions, long longestMillis, int activeDays) {
+            this.firstDay = firstDay;
+            this.lastDay = lastDay;
+            this.days = lastDay - firstDay + 1;
+            this.totalMillis = totalMillis;
+            this.sessions = sessions;
+            this.longestMillis = longestMillis;
+            this.activeDays = activeDays;
+        }
+
+        Period merge(Period after) {
+            return new Period(firstDay, after.lastDay, totalMillis + after.totalMillis, sessions + after.sessions,
+                    Math.max(longestMillis, after.longestMillis), activeDays + after.activeDays);
+        }
+
+        private static class Builder {
+            private final int firstDay;
+            private long totalMillis;
+            private int sessions;
+            private long longestMillis;
+            private int activeDays;
+
+            Builder(int firstDay) {
+                this.firstDay = firstDay;
+            }
+
+            void add(long total, int daySessions, long longest) {
+                totalMillis += total;
+                sessions += daySessions;
+                longestMillis = Math.max(longestMillis, longest);
+                if (daySessions > 0) {
+                    activeDays++;
+                }
+            }
+
+            Period build(int lastDay) {
+                return new Period(firstDay, lastDay, totalMillis, sessions, longestMillis, activeDays);
+            }
+        }
+    }
+
+    public static class Report {
+        public final int fromEpochDay;
+        public final int toEpochDay;
+        public final List<Period> weeks;
+        public final List<Period> months;
+        private final long[] weekdayTotals;
+        private final int[] weekdayDays;
+
+        private Report(int fromEpochDay, int toEpochDay, Partial partial) {
+            this.fromEpochDay = fromEpochDay;
+            this.toEpochDay = toEpochDay;
+            this.weeks = Collections.unmodifiableList(partial.weeks);
+            this.months = Collections.unmodifiableList(partial.months);
+            this.weekdayTotals = partial.weekdayTotals;
+            this.weekdayDays = partial.weekdayDays;
+        }
+
+        public long totalMillis() {
+            long total = 0;
+            for (Period month : months) {
+                total += month.totalMillis;
+            }
+            return total;
+        }
+
+        public int sessions() {
+            int sessions = 0;
+            for (Period month : months) {
+                sessions += month.sessions;
+            }
+            return sessions;
+        }
+
+        public long longestMillis() {
+            long longest = 0;
+            for (Period month : months) {
+                longest = Math.max(longest, month.longestMillis);
+            }
+            return longest;
+        }
+
+        // Monday first
+        public long[] weekdayTotals() {
+            return weekdayTotals.clone();
+        }
+
+        // average study time of each weekday over the range, Monday first
+        public long[] weekdayAverages() {
+            long[] averages = new long[7];
+            for (int i = 0; i < 7; i++) {
+                averages[i] = weekdayDays[i] == 0 ? 0 : weekdayTotals[i] / weekdayDays[i];
+            }
+            return averages;
+        }
+
+        /**
+         * How much the study time per week grows, in milliseconds per week: the slope of the least
+         * squares line through the weekly totals, cut weeks scaled up to seven days.
+         */
+        public double weeklyTrendMillis() {
+            int n = weeks.size();
+            if (n < 2) {
+                return 0;
+            }
+            double meanX = (n - 1) / 2.0;
+            double meanY = 0;
+            for (Period week : weeks) {
+                meanY += week.totalMillis * 7.0 / week.days;
+            }
+            meanY /= n;
+            double covariance = 0;
+            double variance = 0;
+            for (int i = 0; i < n; i++) {
+                double dx = i - meanX;
+                covariance += dx * (weeks.get(i).totalMillis * 7.0 / weeks.get(i).days - meanY);
+                variance += dx * dx;
+            }
+            return covariance / variance;
+        }
+    }
+}
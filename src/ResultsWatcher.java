@@ -0,0 +1,330 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32C;
+
+/**
+ * Keeps the journal in step with the saved results directory. A {@link WatchService} reports the
+ * exports another tool drops there, and an index of the files already ingested (path, size,
+ * modification time and CRC32C of the content) lets every ingest parse only the new and changed
+ * ones. A file whose size and time did not change is not even opened; one that was touched but
+ * has the same content is only hashed.
+ * <pre>
+ * ingested.index  magic "SRIX", version, entry count, then per file: size, modification
+ *                 epoch-millis, CRC32C, epoch-day and total millis of the export, whether the day
+ *                 holds what was imported from it, UTF-8 absolute path
+ * </pre>
+ * The watch runs on its own daemon thread and ingests once a burst of changes has been quiet for
+ * {@link #QUIET_MILLIS}; the listener is called on the UI executor when days were imported.
+ */
+public class ResultsWatcher implements Closeable {
+    public static final long QUIET_MILLIS = 500;
+    private static final int MAGIC = 0x53524958; // "SRIX"
+    private static final int VERSION = 2;
+
+    private final Path indexPath;
+    private final SessionJournal journal;
+    private final RollupIndex rollups;
+    private final Executor uiExecutor;
+    private final Runnable listener;
+    private final Map<Path, Entry> index = new HashMap<>();
+    private final WatchService watchService;
+    private final AtomicReference<Path> requested = new AtomicReference<>(); // directory to watch next
+    private Path dir; // watched directory, only used by the watch thread
+    private WatchKey key;
+    private volatile boolean closed;
+
+    private ResultsWatcher(Path indexPath, SessionJournal journal, RollupIndex rollups, Executor uiExecutor,
+                           Runnable listener) throws IOException {
+        this.indexPath = indexPath;
+        this.journal = journal;
+        this.rollups = rollups;
+        this.uiExecutor = uiExecutor;
+        this.listener = listener;
+        this.watchService = indexPath.getFileSystem().newWatchService();
+    }
+
+    /**
+     * Loads the index and starts the watch thread, which watches nothing until {@link #watch(Path)}.
+     */
+    public static ResultsWatcher open(Path indexPath, SessionJournal journal, RollupIndex rollups,
+                                      Executor uiExecutor, Runnable listener) throws IOException {
+        ResultsWatcher watcher = new ResultsWatcher(indexPath, journal, rollups, uiExecutor, listener);
+        watcher.loadIndex();
+        Thread thread = new Thread(watcher::run, "results-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return watcher;
+    }
+
+    /**
+     * Watches the directory instead of the previous one and ingests what changed in it while it
+     * was not watched. The switch happens on the watch thread, a slow drive does not hold up the caller.
+     */
+    public void watch(Path dir) {
+        requested.set(dir.toAbsolutePath());
+    }
+
+    /**
+     * Parses the new and changed exports of the directory and writes their days to the journal in
+     * one batch, unless the importer was cancelled, and returns the number of days written. With
+     * {@code reapply} the days of the unchanged exports are written again from the index where the
+     * journal has nothing for them any more, e.g. after a clear. A day with sessions is never
+     * replaced by its export, unless all it holds is what an earlier version of the same export
+     * imported: an edited export replaces its day again. Files that could not be read are added
+     * to the errors and left out of the index, so the next ingest tries them again.
+     */
+    public synchronized int ingest(Path dir, boolean reapply, BulkImporter importer,
+                                   BulkImporter.ProgressListener progress, List<String> errors)
+            throws IOException, InterruptedException, ExecutionException {
+        Map<Path, Entry> seen = new HashMap<>();
+        List<Path> changed = new ArrayList<>();
+        List<Entry> previous = new ArrayList<>(); // index entry of each changed file, null if new
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.txt")) {
+            for (Path file : stream) {
+                if (!isExport(file)) {
+                    continue;
+                }
+                Path path = file.toAbsolutePath();
+                BasicFileAttributes attributes;
+                int hash;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    Entry known = index.get(path);
+                    if (known != null && known.size == attributes.size()
+                            && known.modified == attributes.lastModifiedTime().toMillis()) {
+                        seen.put(path, known);
+                        continue;
+                    }
+                    hash = hash(path);
+                    if (known != null && known.hash == hash) { // touched, not changed
+                        seen.put(path, new Entry(attributes, hash, known.epochDay, known.total, known.imported));
+                        continue;
+                    }
+                    previous.add(known);
+                } catch (NoSuchFileException e) { // deleted while listing
+                    continue;
+                }
+                seen.put(path, new Entry(attributes, hash, Integer.MIN_VALUE, 0, false));
+                changed.add(path);
+            }
+        }
+
+        BulkImporter.Result result = importer.parse(changed, progress).get();
+        errors.addAll(result.getErrors());
+        if (importer.isCancelled()) { // the index stays as it was, so the changed files are parsed next time
+            return 0;
+        }
+        int applied = 0;
+        synchronized (journal) {
+            for (int i = 0; i < changed.size(); i++) {
+                Path path = changed.get(i);
+                if (result.isFailed(i)) { // not indexed, so the next ingest tries it again
+                    seen.remove(path);
+                    continue;
+                }
+                int day = result.getDay(i);
+                long total = result.getTotal(i);
+                boolean imported = false;
+                if (day != Integer.MIN_VALUE) {
+                    long dayTotal = rollups.dayTotal(day);
+                    Entry before = previous.get(i);
+                    // the day holds what the previous version of this export wrote, and nothing else
+                    boolean ours = before != null && before.imported && before.epochDay == day
+                            && before.total == dayTotal;
+                    if (ours && total == dayTotal) {
+                        imported = true;
+                    } else if (ours || total > 0 && dayTotal == 0) {
+                        journal.importDay(day, 1, total, total, total);
+                        imported = total > 0;
+                        applied++;
+                    }
+                }
+                Entry entry = seen.get(path);
+                seen.put(path, new Entry(entry.size, entry.modified, entry.hash, day, total, imported));
+            }
+            if (reapply) {
+                for (Map.Entry<Path, Entry> file : seen.entrySet()) {
+                    Entry entry = file.getValue();
+                    if (entry.epochDay != Integer.MIN_VALUE && entry.total > 0
+                            && rollups.dayTotal(entry.epochDay) == 0) {
+                        journal.importDay(entry.epochDay, 1, entry.total, entry.total, entry.total);
+                        file.setValue(new Entry(entry.size, entry.modified, entry.hash, entry.epochDay, entry.total,
+                                true));
+                        applied++;
+                    }
+                }
+            }
+        }
+        Path absolute = dir.toAbsolutePath();
+        index.keySet().removeIf(path -> absolute.equals(path.getParent())); // deleted files are forgotten
+        index.putAll(seen);
+        saveIndex();
+        return applied;
+    }
+
+    private static boolean isExport(Path file) {
+        try {
+            LocalDate.parse(file.getFileName().toString().replace(".txt", ""));
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static int hash(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(file)) {
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                crc.update(buffer, 0, n);
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    private void run() {
+        boolean dirty = false;
+        while (!closed) {
+            try {
+                Path next = requested.getAndSet(null);
+                if (next != null && !next.equals(dir)) {
+                    switchTo(next);
+                    dirty = true;
+                }
+                WatchKey changed = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                if (changed != null) {
+                    changed.pollEvents(); // which files does not matter, the index tells
+                    changed.reset();
+                    dirty = true;
+                } else if (dirty && dir != null) { // the burst is over
+                    dirty = false;
+                    ingestWatched();
+                }
+            } catch (ClosedWatchServiceException | InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void switchTo(Path next) {
+        if (key != null) {
+            key.cancel();
+            key = null;
+        }
+        dir = next;
+        try {
+            key = next.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) { // gone or unreachable, the next watch() tries again
+            dir = null;
+            e.printStackTrace();
+        }
+    }
+
+    private void ingestWatched() throws InterruptedException {
+        try {
+            List<String> errors = new ArrayList<>();
+            int applied = ingest(dir, false, new BulkImporter(BulkImporter.DEFAULT_PARALLELISM), (done, total) -> {},
+                    errors);
+            errors.forEach(System.err::println); // nobody asked for this ingest, an alert would come out of nowhere
+            if (applied > 0) {
+                uiExecutor.execute(listener);
+            }
+        } catch (IOException | ExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        if (!Files.exists(indexPath)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return; // rebuilt by the next ingest
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long size = in.readLong();
+                long modified = in.readLong();
+                int hash = in.readInt();
+                int epochDay = in.readInt();
+                long total = in.readLong();
+                boolean imported = in.readBoolean();
+                index.put(Path.of(in.readUTF()), new Entry(size, modified, hash, epochDay, total, imported));
+            }
+        }
+    }
+
+    private void saveIndex() throws IOException {
+        Path temp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(index.size());
+            for (Map.Entry<Path, Entry> file : index.entrySet()) {
+                out.writeLong(file.getValue().size);
+                out.writeLong(file.getValue().modified);
+                out.writeInt(file.getValue().hash);
+                out.writeInt(file.getValue().epochDay);
+                out.writeLong(file.getValue().total);
+                out.writeBoolean(file.getValue().imported);
+                out.writeUTF(file.getKey().toString());
+            }
+        }
+        Files.move(temp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watchService.close();
+    }
+
+    private static class Entry {
+        final long size;
+        final long modified;
+        final int hash;
+        final int epochDay; // Integer.MIN_VALUE if the file holds no total
+        final long total;
+        final boolean imported; // the day was written from this export
+
+        Entry(long size, long modified, int hash, int epochDay, long total, boolean imported) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            this.epochDay = epochDay;
+            this.total = total;
+            this.imported = imported;
+        }
+
+        Entry(BasicFileAttributes attributes, int hash, int epochDay, long total, boolean imported) {
+            this(attributes.size(), attributes.lastModifiedTime().toMillis(), hash, epochDay, total, imported);
+        }
+    }
+}
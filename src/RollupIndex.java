@@ -0,0 +1,198 @@
+import java.time.LocalDate;
+
+/**
+ * In-memory totals of the session journal. Per-day figures live in primitive arrays indexed
+ * by epoch-day and the week, month and year sums are kept up to date as records arrive, so
+ * every query is a single array lookup no matter how many years of history there are.
+ * Feed it with {@link SessionJournal#subscribe(SessionJournal.RecordVisitor)}.
+ */
+public class RollupIndex implements SessionJournal.RecordVisitor {
+    private static final int INITIAL_DAYS = 366;
+
+    private int firstDay; // epoch-day stored at index 0
+    private long[] totals = new long[0];
+    private int[] sessions = new int[0];
+    private long[] longest = new long[0];
+    private long[] last = new long[0];
+    private final Sums weeks = new Sums();
+    private final Sums months = new Sums();
+    private final Sums years = new Sums();
+
+    @Override
+    public synchronized void visit(long startMillis, long endMillis, int epochDay, int flags) {
+        if (flags == SessionJournal.FLAG_CLEAR_ALL) {
+            clearAll();
+        } else if (flags == SessionJournal.FLAG_CLEAR_DAY) {
+            clearDay(epochDay);
+        } else if (SessionJournal.isSession(flags)) {
+            addSession(epochDay, endMillis - startMillis);
+        }
+    }
+
+    private void addSession(int epochDay, long length) {
+        int i = ensureDay(epochDay);
+        totals[i] += length;
+        sessions[i]++;
+        longest[i] = Math.max(longest[i], length);
+        last[i] = length;
+        addToSums(epochDay, length);
+    }
+
+    private void clearDay(int epochDay) {
+        int i = epochDay - firstDay;
+        if (i < 0 || i >= totals.length || sessions[i] == 0) {
+            return;
+        }
+        addToSums(epochDay, -totals[i]);
+        totals[i] = 0;
+        sessions[i] = 0;
+        longest[i] = 0;
+        last[i] = 0;
+    }
+
+    private void clearAll() {
+        totals = new long[0];
+        sessions = new int[0];
+        longest = new long[0];
+        last = new long[0];
+        weeks.clear();
+        months.clear();
+        years.clear();
+    }
+
+    private void addToSums(int epochDay, long length) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        weeks.add(weekKey(epochDay), length);
+        months.add(date.getYear() * 12 + date.getMonthValue() - 1, length);
+        years.add(date.getYear(), length);
+    }
+
+    // weeks start on Monday, epoch-day 4 (1970-01-05) is the first day of week 1
+    private static int weekKey(int epochDay) {
+        return Math.floorDiv(epochDay + 3, 7);
+    }
+
+    // grows the day arrays to cover the given day and returns its index
+    private int ensureDay(int epochDay) {
+        if (totals.length == 0) {
+            firstDay = epochDay - INITIAL_DAYS + 1;
+            resize(0, INITIAL_DAYS);
+        } else if (epochDay < firstDay) {
+            int shift = Math.max(firstDay - epochDay, totals.length);
+            firstDay -= shift;
+            resize(shift, totals.length + shift);
+        } else if (epochDay - firstDay >= totals.length) {
+            resize(0, Math.max(epochDay - firstDay + 1, totals.length * 2));
+        }
+        return epochDay - firstDay;
+    }
+
+    private void resize(int shift, int length) {
+        long[] newTotals = new long[length];
+        int[] newSessions = new int[length];
+        long[] newLongest = new long[length];
+        long[] newLast = new long[length];
+        System.arraycopy(totals, 0, newTotals, shift, totals.length);
+        System.arraycopy(sessions, 0, newSessions, shift, sessions.length);
+        System.arraycopy(longest, 0, newLongest, shift, longest.length);
+        System.arraycopy(last, 0, newLast, shift, last.length);
+        totals = newTotals;
+        sessions = newSessions;
+        longest = newLongest;
+        last = newLast;
+    }
+
+    private int index(int epochDay) {
+        int i = epochDay - firstDay;
+        return i >= 0 && i < totals.length ? i : -1;
+    }
+
+    public synchronized long dayTotal(int epochDay) {
+        int i = index(epochDay);
+        return i < 0 ? 0 : totals[i];
+    }
+
+    public synchronized int sessions(int epochDay) {
+        int i = index(epochDay);
+        return i < 0 ? 0 : sessions[i];
+    }
+
+    public synchronized long longestSession(int epochDay) {
+        int i = index(epochDay);
+        return i < 0 ? 0 : longest[i];
+    }
+
+    public synchronized long lastSession(int epochDay) {
+        int i = index(epochDay);
+        return i < 0 ? 0 : last[i];
+    }
+
+    /**
+     * Copies the totals of consecutive days starting at the given epoch-day into the array.
+     */
+    public synchronized void dayTotals(int fromEpochDay, long[] dest) {
+        for (int d = 0; d < dest.length; d++) {
+            int i = index(fromEpochDay + d);
+            dest[d] = i < 0 ? 0 : totals[i];
+        }
+    }
+
+    /**
+     * Copies the total, session count and longest session of consecutive days starting at the
+     * given epoch-day into the arrays, which have the same length.
+     */
+    public synchronized void dayFigures(int fromEpochDay, long[] totalsDest, int[] sessionsDest, long[] longestDest) {
+        for (int d = 0; d < totalsDest.length; d++) {
+            int i = index(fromEpochDay + d);
+            totalsDest[d] = i < 0 ? 0 : totals[i];
+            sessionsDest[d] = i < 0 ? 0 : sessions[i];
+            longestDest[d] = i < 0 ? 0 : longest[i];
+        }
+    }
+
+    // total of the week (Monday to Sunday) containing the given day
+    public synchronized long weekTotal(int epochDay) {
+        return weeks.get(weekKey(epochDay));
+    }
+
+    public synchronized long monthTotal(int epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        return months.get(date.getYear() * 12 + date.getMonthValue() - 1);
+    }
+
+    public synchronized long yearTotal(int epochDay) {
+        return years.get(LocalDate.ofEpochDay(epochDay).getYear());
+    }
+
+    // sums keyed by a dense integer key (week, month or year number)
+    private static class Sums {
+        private int firstKey;
+        private long[] values = new long[0];
+
+        void add(int key, long value) {
+            if (values.length == 0) {
+                firstKey = key;
+                values = new long[8];
+            } else if (key < firstKey) {
+                long[] grown = new long[values.length + (firstKey - key) + 8];
+                System.arraycopy(values, 0, grown, firstKey - key + 8, values.length);
+                firstKey = key - 8;
+                values = grown;
+            } else if (key - firstKey >= values.length) {
+                long[] grown = new long[Math.max(key - firstKey + 1, values.length * 2)];
+                System.arraycopy(values, 0, grown, 0, values.length);
+                values = grown;
+            }
+            values[key - firstKey] += value;
+        }
+
+        long get(int key) {
+            int i = key - firstKey;
+            return i >= 0 && i < values.length ? values[i] : 0;
+        }
+
+        void clear() {
+            values = new long[0];
+        }
+    }
+}
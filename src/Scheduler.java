@@ -19,58 +19,174 @@ import javafx.scene.text.Font;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import java.io.*;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.DayOfWeek;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.time.format.FormatStyle;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
-import java.util.stream.Collectors;
 
 public class Scheduler extends Application {
     private static final int WIDTH = 850;
     private static final int HEIGHT = 530;
-    private final Preferences preferences = Preferences.userNodeForPackage(Scheduler.class); // use Preferences to save data
-    private final ScheduledExecutorService executorService = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors()); // executor service for application tasks
-    private ScheduledFuture<?> sessionCounterAction; // reference to the counter task
+    private static final long PREFERENCES_FLUSH_MILLIS = Long.getLong("scheduler.preferences.flushMillis",
+            PreferenceCache.DEFAULT_FLUSH_MILLIS);
+    private PreferenceCache preferences; // use Preferences to save data, written behind on the background thread
+    private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "scheduler-background");
+        thread.setDaemon(true);
+        return thread;
+    }); // single daemon thread for application tasks, it never keeps the JVM alive
+    private final SessionTimer sessionTimer = new SessionTimer(executorService, Platform::runLater);
+    // file reads and writes of the save and load actions, a slow drive never holds up the timer
+    private final ExecutorService ioExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "scheduler-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Path DATA_DIR = Paths.get(System.getProperty("user.home"), ".scheduler");
+    private static final Path PLANS_PATH = DATA_DIR.resolve("plans.txt");
+    private final SessionTracker tracker = new SessionTracker(DATA_DIR); // session logic, shared with the headless server
+    private final TimingWheel timingWheel = new TimingWheel(1000, System.currentTimeMillis()); // one-second resolution
+    private StudyPlanner planner; // planned blocks, Pomodoro cycles and reminders, fired by the timing wheel
+    private ResourceBundle plannerLanguage; // language of the planner notifications, set once a language is chosen
+    private SessionJournal journal; // every finished session of the local user, daily and weekly figures are derived from it
+    private RollupIndex rollups; // day, week, month and year totals of the journal
+    private SessionStatistics statistics; // session length percentiles and streaks of the journal
     private LocalTime startTime, endTime;
-    private Duration totalToday;
-    private Duration totalThisWeek;
-    private static final String SESSIONS_KEY = "number_of_sessions(" + LocalDate.now().toString() + ")";
-    private static final String LAST_SESSION_KEY = "last_session(" + LocalDate.now().toString() + ")";
-    private static final String LONGEST_SESSION_KEY = "longest_session(" + LocalDate.now().toString() + ")";
-    private static final String TOTAL_TIME_TODAY_KEY = "total_today(" + LocalDate.now().toString() + ")";
-    private static final String TOTAL_TIME_WEEK_KEY = "total_this_week";
-    private static final String WEEKLY_RESET_KEY = "week_reset";
+    private FileTask<?> runningTask; // save or load in progress, a new one cancels it
+    private ProgressBar fileProgress; // shown while a save or load is in progress
+    private Button cancelFileTask;
+    // per-day keys of earlier versions older than this are rolled into month summaries, see LegacyPreferences
+    private static final int PREFERENCES_RETENTION_DAYS = Integer.getInteger("scheduler.preferences.retentionDays",
+            LegacyPreferences.DEFAULT_RETENTION_DAYS);
+    private LegacyPreferences legacyPreferences;
+    // shared directory the sessions of all devices of the user are exchanged through, no sync if unset
+    private static final String SYNC_DIR = System.getProperty("scheduler.sync.dir");
+    private static final long SYNC_SECONDS = Long.getLong("scheduler.sync.seconds", 60);
+    private DeviceSync deviceSync;
     private static final String SAVED_DATA_KEY = "saved_data";
+    private final StringBuilder labelText = new StringBuilder(64); // reused to build the text of the data labels
     private CategoryAxis xAxis;
     private NumberAxis yAxis;
+    private ChartModel chartModel; // created with the chart, when it is first shown
+    private VBox chartBox;
+    private Stage notesStage; // created when the notes are first opened
+    private Stage plansStage; // created when the plans are first opened
+    private ListView<StudyPlanner.Plan> plansList;
+    private CompletableFuture<NotesStore> notes; // opened and saved in the background, fails if the notes cannot be read
+    private ResultsWatcher resultsWatcher; // imports the exports other tools drop into the saved results directory
+    private final Map<String, Image> icons = new HashMap<>(); // decoded in the background, see icon()
 
     @Override
     public void start(Stage primaryStage) {
+        // the phases are recorded as JFR events, see StartupEvent
+        try {
+            SchedulerMetrics.register(tracker);
+            StartupEvent phase = StartupEvent.begin("preferences");
+            preferences = PreferenceCache.open(Preferences.userNodeForPackage(Scheduler.class), executorService,
+                    PREFERENCES_FLUSH_MILLIS);
+            phase.done();
+            phase = StartupEvent.begin("journal");
+            journal = tracker.journal(SessionTracker.LOCAL_USER);
+            rollups = tracker.rollups(SessionTracker.LOCAL_USER);
+            statistics = tracker.statistics(SessionTracker.LOCAL_USER);
+            legacyPreferences = new LegacyPreferences(preferences);
+            if (journal.size() == 0) {
+                legacyPreferences.migrate(journal);
+            }
+            // once the days are in the journal, old keys are compacted in the background, and again every day
+            executorService.scheduleWithFixedDelay(this::compactPreferences, 1, TimeUnit.DAYS.toMinutes(1), TimeUnit.MINUTES);
+            if (SYNC_DIR != null) {
+                deviceSync = DeviceSync.open(DATA_DIR.resolve("sync.state"), journal, new SyncDirectory(Paths.get(SYNC_DIR)));
+            }
+            phase.done();
+            phase = StartupEvent.begin("planner");
+            planner = new StudyPlanner(PLANS_PATH, timingWheel, executorService, ioExecutor,
+                    (plan, event, atMillis) -> Platform.runLater(() -> showPlanEvent(plan, event)));
+            planner.load();
+            timingWheel.start(executorService);
+            phase.done();
+            // opening hashes the whole chunk file, it is done on the I/O executor while the language is chosen
+            StartupEvent notesPhase = StartupEvent.begin("notes");
+            notes = CompletableFuture.supplyAsync(() -> {
+                try {
+                    NotesStore store = NotesStore.open(DATA_DIR.resolve("notes"), executorService, ioExecutor,
+                            Platform::runLater);
+                    String legacyNotes = preferences.get("notes", null); // earlier versions kept the notes in Preferences
+                    if (legacyNotes != null) {
+                        if (store.isEmpty()) {
+                            store.save(legacyNotes);
+                        }
+                        preferences.remove("notes");
+                    }
+                    notesPhase.done();
+                    return store;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, ioExecutor);
+        } catch (IOException | BackingStoreException e) {
+            showAlert(e.getClass().getSimpleName(), e.getMessage());
+            Platform.exit();
+            return;
+        }
+
+        StartupEvent phase = StartupEvent.begin("language scene");
         primaryStage.setTitle("Scheduler");
         primaryStage.setScene(languageSelectionScene(primaryStage));
         primaryStage.show();
+        doneOnFirstFrame(primaryStage.getScene(), phase);
 
         // shutdown all tasks on exit
         primaryStage.setOnCloseRequest(event -> {
+            timingWheel.stop();
+            preferences.close();
             if (!executorService.isShutdown()) {
                 executorService.shutdownNow();
             }
+            try { // before the I/O threads are interrupted, an interrupt would close the channel of an autosave
+                NotesStore store = notes.handle((opened, e) -> opened).join();
+                if (store != null) {
+                    store.close();
+                }
+                planner.save();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            ioExecutor.shutdownNow();
+            try {
+                if (resultsWatcher != null) {
+                    resultsWatcher.close();
+                }
+                tracker.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         });
     }
 
     private Scene languageSelectionScene(Stage primaryStage) {
-        primaryStage.getIcons().add(new Image(getClass().getResourceAsStream("/icon.png")));
+        primaryStage.getIcons().add(icon("/icon.png"));
+        // the icons of the main scene are decoded while the language is chosen
+        for (String name : new String[]{"/data.png", "/timer.png", "/chart.png", "/save.png", "/load.png", "/notes.png"}) {
+            icon(name);
+        }
 
         // language selection txt
         Label title = new Label("Select Language");
@@ -84,14 +200,18 @@ public class Scheduler extends Application {
 
         // set language to english
         en.setOnAction(event -> {
+            StartupEvent phase = StartupEvent.begin("main scene");
             ResourceBundle languageData = ResourceBundle.getBundle("language", new Locale("en"));
             primaryStage.setScene(mainScene(primaryStage, languageData));
+            doneOnFirstFrame(primaryStage.getScene(), phase);
         });
 
         // set language to serbian
         sr.setOnAction(event -> {
+            StartupEvent phase = StartupEvent.begin("main scene");
             ResourceBundle languageData = ResourceBundle.getBundle("language", new Locale("sr"));
             primaryStage.setScene(mainScene(primaryStage, languageData));
+            doneOnFirstFrame(primaryStage.getScene(), phase);
         });
 
         // hBox to place the title
@@ -120,8 +240,9 @@ public class Scheduler extends Application {
     }
 
     private Scene mainScene(Stage primaryStage, ResourceBundle languageData) {
+        plannerLanguage = languageData;
 
-        Label currentDate = new Label(languageData.getString("1") + preferences.get(LocalDate.now().toString(), "n/o"));
+        Label currentDate = new Label();
         currentDate.setId("dataLabel");
 
         DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofLocalizedDate(FormatStyle.FULL)
@@ -131,36 +252,32 @@ public class Scheduler extends Application {
         }
         currentDate.setText(languageData.getString("1") + LocalDate.now().format(dateTimeFormatter));
 
-        // weekly reset on startup
-        if (LocalDate.now().getDayOfWeek() == DayOfWeek.MONDAY && preferences.getBoolean(WEEKLY_RESET_KEY, true)) {
-            preferences.putBoolean(WEEKLY_RESET_KEY, false);
-            preferences.put(TOTAL_TIME_WEEK_KEY, "PT0S");
-            totalToday = Duration.of(0, ChronoUnit.SECONDS);
-            totalThisWeek = Duration.of(0, ChronoUnit.SECONDS);
-            // daily study time reset
-            Arrays.stream(DayOfWeek.values()).forEach(dayOfWeek -> preferences.put(dayOfWeek.toString(), "PT0S"));
-        } else if (LocalDate.now().getDayOfWeek() != DayOfWeek.MONDAY) {
-            preferences.putBoolean(WEEKLY_RESET_KEY, true);
-        }
-
-        Label numberOfSessions = new Label(languageData.getString("2") + preferences.get(SESSIONS_KEY, "0"));
+        // the week needs no reset, weekly figures are always derived for the current week
+        Label numberOfSessions = new Label();
         numberOfSessions.setId("dataLabel");
 
-        Label lastSessionDuration = new Label(languageData.getString("3") + formatTime(preferences.get(LAST_SESSION_KEY, "PT0S")));
+        Label lastSessionDuration = new Label();
         lastSessionDuration.setId("dataLabel");
 
-        Label longestSession = new Label(languageData.getString("4") + formatTime(preferences.get(LONGEST_SESSION_KEY, "PT0S")));
+        Label longestSession = new Label();
         longestSession.setId("dataLabel");
 
-        Label totalTimeToday = new Label(languageData.getString("5") + formatTime(preferences.get(TOTAL_TIME_TODAY_KEY, "PT0S")));
+        Label totalTimeToday = new Label();
         totalTimeToday.setId("dataLabel");
 
-        Label totalTimeThisWeek = new Label(languageData.getString("6") + formatTime(preferences.get(TOTAL_TIME_WEEK_KEY, "PT0S")));
+        Label totalTimeThisWeek = new Label();
         totalTimeThisWeek.setId("dataLabel");
 
+        Label sessionLengths = new Label();
+        sessionLengths.setId("dataLabel");
+
+        Label streaks = new Label();
+        streaks.setId("dataLabel");
+        updateDataLabels(numberOfSessions, lastSessionDuration, longestSession, totalTimeToday, totalTimeThisWeek, sessionLengths, streaks, languageData);
+
         // create array of main labels
         Node[] mainLabels = {currentDate, numberOfSessions, lastSessionDuration, longestSession,
-                totalTimeToday, totalTimeThisWeek};
+                totalTimeToday, totalTimeThisWeek, sessionLengths, streaks};
 
         Label sessionStarted = new Label(languageData.getString("14"));
         sessionStarted.setId("dataLabel");
@@ -169,6 +286,7 @@ public class Scheduler extends Application {
         sessionFinished.setId("dataLabel");
 
         Label elapsedSessionTime = new Label(languageData.getString("16"));
+        DurationFormatter elapsedFormatter = new DurationFormatter(languageData.getString("16")); // reused on every tick
         elapsedSessionTime.setId("dataLabel");
 
         // create array of progress labels
@@ -184,60 +302,40 @@ public class Scheduler extends Application {
         Button clearWeeklyData = new Button(languageData.getString("10")); // button to clear weekly results
         clearWeeklyData.setId("regularButton");
 
+        Button showPlans = new Button(languageData.getString("34")); // button to plan study blocks and reminders
+        showPlans.setId("regularButton");
+
         // tool panel buttons
         Button mainData = new Button();
-        mainData.setGraphic(new ImageView(new Image(getClass().getResourceAsStream("/data.png"))));
+        mainData.setGraphic(new ImageView(icon("/data.png")));
         mainData.setTooltip(new Tooltip(languageData.getString("11")));
         mainData.setId("sideButton");
 
         Button elapsedTime = new Button();
-        elapsedTime.setGraphic(new ImageView(new Image(getClass().getResourceAsStream("/timer.png"))));
+        elapsedTime.setGraphic(new ImageView(icon("/timer.png")));
         elapsedTime.setTooltip(new Tooltip(languageData.getString("12")));
         elapsedTime.setId("sideButton");
 
         Button chartSelector = new Button();
-        chartSelector.setGraphic(new ImageView(new Image(getClass().getResourceAsStream("/chart.png"))));
+        chartSelector.setGraphic(new ImageView(icon("/chart.png")));
         chartSelector.setTooltip(new Tooltip(languageData.getString("13")));
         chartSelector.setId("sideButton");
 
         Button saveResults = new Button();
-        saveResults.setGraphic(new ImageView(new Image(getClass().getResourceAsStream("/save.png"))));
+        saveResults.setGraphic(new ImageView(icon("/save.png")));
         saveResults.setTooltip(new Tooltip(languageData.getString("17")));
         saveResults.setId("sideButton");
 
         Button loadResults = new Button();
-        loadResults.setGraphic(new ImageView(new Image(getClass().getResourceAsStream("/load.png"))));
+        loadResults.setGraphic(new ImageView(icon("/load.png")));
         loadResults.setTooltip(new Tooltip(languageData.getString("18")));
         loadResults.setId("sideButton");
 
         Button showNotes = new Button();
-        showNotes.setGraphic(new ImageView(new Image(getClass().getResourceAsStream("/notes.png"))));
+        showNotes.setGraphic(new ImageView(icon("/notes.png")));
         showNotes.setTooltip(new Tooltip(languageData.getString("25")));
         showNotes.setId("sideButton");
 
-        // set up a bar chart
-        xAxis = new CategoryAxis();
-        xAxis.setLabel(languageData.getString("20"));
-        xAxis.getStyleClass().add("axis-label");
-        xAxis.setId("tLabelX");
-
-        yAxis = new NumberAxis();
-        yAxis.setLabel(languageData.getString("21"));
-        yAxis.getStyleClass().add("axis-label");
-        yAxis.setId("tLabelY");
-
-        BarChart barChart = new BarChart(xAxis, yAxis);
-        barChart.setLegendVisible(false);
-        barChart.getStyleClass().add("chart-plot-background");
-
-        XYChart.Series<String, Number> xySeriesChart = new XYChart.Series<>();
-        barChart.getData().add(xySeriesChart);
-
-        VBox.setVgrow(barChart, Priority.ALWAYS);
-        VBox chartBox = new VBox();
-        chartBox.setAlignment(Pos.CENTER);
-        chartBox.getChildren().add(barChart);
-
         // main labels margins
         VBox.setMargin(currentDate, new Insets(10, 10, 5, 5));
         VBox.setMargin(numberOfSessions, new Insets(5, 10, 5, 5));
@@ -245,13 +343,14 @@ public class Scheduler extends Application {
         VBox.setMargin(longestSession, new Insets(5, 10, 5, 5));
         VBox.setMargin(totalTimeToday, new Insets(5, 10, 5, 5));
         VBox.setMargin(totalTimeThisWeek, new Insets(5, 10, 5, 5));
+        VBox.setMargin(sessionLengths, new Insets(5, 10, 5, 5));
+        VBox.setMargin(streaks, new Insets(5, 10, 5, 5));
 
         // elapsed time labels margins
         VBox.setMargin(sessionStarted, new Insets(5, 10, 5, 5));
         VBox.setMargin(sessionFinished, new Insets(5, 10, 5, 5));
         VBox.setMargin(elapsedSessionTime, new Insets(5, 10, 5, 5));
 
-        VBox.setVgrow(chartBox, Priority.ALWAYS);
         VBox borderBox = new VBox();
         borderBox.setAlignment(Pos.TOP_LEFT);
         borderBox.setStyle("-fx-border-style:solid; -fx-border-width:1; -fx-border-color:#c0c0c0;");
@@ -282,7 +381,18 @@ public class Scheduler extends Application {
         HBox controlBox = new HBox();
         controlBox.setAlignment(Pos.CENTER);
         controlBox.setSpacing(15);
-        controlBox.getChildren().addAll(startSession, clearDailyData, clearWeeklyData);
+        controlBox.getChildren().addAll(startSession, clearDailyData, clearWeeklyData, showPlans);
+
+        fileProgress = new ProgressBar(0);
+        fileProgress.setVisible(false);
+        cancelFileTask = new Button(languageData.getString("33"));
+        cancelFileTask.setVisible(false);
+        cancelFileTask.setOnAction(event -> {
+            if (runningTask != null) {
+                runningTask.cancel();
+            }
+        });
+        controlBox.getChildren().addAll(fileProgress, cancelFileTask);
 
         mainData.setOnAction(event -> {
             borderBox.getChildren().clear();
@@ -295,7 +405,10 @@ public class Scheduler extends Application {
         });
 
         chartSelector.setOnAction(event -> {
-            configureChartData(xySeriesChart, languageData, false);
+            if (chartModel == null) {
+                createChart(languageData);
+            }
+            configureChartData(languageData);
             borderBox.getChildren().clear();
             borderBox.getChildren().addAll(chartBox);
         });
@@ -303,12 +416,13 @@ public class Scheduler extends Application {
         saveResults.setOnAction(event -> {
             FileChooser fileChooser = new FileChooser();
             fileChooser.setTitle(languageData.getString("17"));
-            fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Text Files", "*.txt"));
+            fileChooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("Text Files", "*.txt"),
+                    new FileChooser.ExtensionFilter("Full history (CSV)", "*.csv"),
+                    new FileChooser.ExtensionFilter("Full history (NDJSON)", "*.ndjson"),
+                    new FileChooser.ExtensionFilter("Full history (binary)", "*.sessions"),
+                    new FileChooser.ExtensionFilter("Snapshot", "*.snapshot"));
             fileChooser.setInitialFileName(LocalDate.now().toString() + ".txt");
-            if (!preferences.get(SAVED_DATA_KEY, "").equals("")) {
-                String dirPath = preferences.get(SAVED_DATA_KEY, "");
-                fileChooser.setInitialDirectory(new File(dirPath.substring(0, dirPath.lastIndexOf('\\'))));
-            }
+            setInitialDirectory(fileChooser);
 
             File file;
             try {
@@ -321,28 +435,42 @@ public class Scheduler extends Application {
             if (file == null)
                 return;
 
-            preferences.put(SAVED_DATA_KEY, file.getAbsolutePath());
-
-            try (PrintWriter printWriter = new PrintWriter(new FileWriter(file))) {
-                String data = languageData.getString("2") + preferences.getInt(SESSIONS_KEY, 0) + "\n" +
-                        languageData.getString("3") + preferences.get(LAST_SESSION_KEY, "PT0s") + "\n" +
-                        languageData.getString("4") + preferences.get(LONGEST_SESSION_KEY, "PT0s") + "\n" +
-                        languageData.getString("5") + preferences.get(TOTAL_TIME_TODAY_KEY, "PT0s") + "\n" +
-                        languageData.getString("6") + preferences.get(TOTAL_TIME_WEEK_KEY, "PT0s") + "\n";
-                printWriter.print(data);
-            } catch (IOException e) {
-                e.printStackTrace();
+            Path target = file.toPath();
+            FileTask.Work<Integer> work;
+            if (file.getName().endsWith(".snapshot")) {
+                work = task -> SessionSnapshot.write(journal, target);
+            } else if (!file.getName().endsWith(".txt")) { // the whole history, not just today's figures
+                work = task -> {
+                    HistoryExporter exporter = new HistoryExporter(HistoryExporter.Format.of(target));
+                    task.onCancel(exporter::cancel);
+                    return exporter.export(journal, target, task::progress).get();
+                };
+            } else {
+                int today = epochDay(LocalDate.now());
+                String data = languageData.getString("2") + rollups.sessions(today) + "\n" +
+                        languageData.getString("3") + Duration.ofMillis(rollups.lastSession(today)) + "\n" +
+                        languageData.getString("4") + Duration.ofMillis(rollups.longestSession(today)) + "\n" +
+                        languageData.getString("5") + Duration.ofMillis(rollups.dayTotal(today)) + "\n" +
+                        languageData.getString("6") + Duration.ofMillis(rollups.weekTotal(today)) + "\n";
+                work = task -> {
+                    Files.writeString(target, data, Charset.defaultCharset());
+                    return 1;
+                };
             }
+            runFileTask(work, (written, report) -> {
+                if (report.failure == null && !report.cancelled) {
+                    preferences.put(SAVED_DATA_KEY, target.toAbsolutePath().toString());
+                    watchResults();
+                }
+            });
         });
 
         loadResults.setOnAction(event -> {
             FileChooser fileChooser = new FileChooser();
             fileChooser.setTitle(languageData.getString("18"));
-            fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Text Files", "*.txt"));
-            if (!preferences.get(SAVED_DATA_KEY, "").equals("")) {
-                String folderPath = preferences.get(SAVED_DATA_KEY, "");
-                fileChooser.setInitialDirectory(new File(folderPath.substring(0, folderPath.lastIndexOf('\\'))));
-            }
+            fileChooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("Text Files", "*.txt"),
+                    new FileChooser.ExtensionFilter("Snapshot", "*.snapshot"));
+            setInitialDirectory(fileChooser);
             File file;
             try {
                 file = fileChooser.showOpenDialog(primaryStage);
@@ -354,98 +482,80 @@ public class Scheduler extends Application {
             if (file == null)
                 return;
 
-            preferences.put(SAVED_DATA_KEY, file.getAbsolutePath().replace('\'', '/'));
-
-            List<String> data = new ArrayList<>();
-            try (BufferedReader bufferedReader = new BufferedReader(new FileReader(file))) {
-                bufferedReader.lines().forEach(line -> data.add(line.substring(line.indexOf(":") + 1).trim()));
-            } catch (IOException e) {
-                e.printStackTrace();
+            Path selected = file.toPath();
+            FileTask.Work<Integer> work;
+            if (file.getName().endsWith(".snapshot")) { // the whole history, nothing else to import
+                work = task -> SessionSnapshot.open(selected).restore(journal);
+            } else {
+                LocalDate date = exportDate(file);
+                work = task -> importResults(task, selected, date);
             }
-            storePreferences(Duration.parse(data.get(3)), Duration.parse(data.get(4)), Integer.parseInt(data.get(0)),
-                    data.get(2), Duration.parse(data.get(1)));
-
-            numberOfSessions.setText(languageData.getString("2") + preferences.getInt(SESSIONS_KEY, 0));
-            lastSessionDuration.setText(languageData.getString("3") + formatTime(preferences.get(LAST_SESSION_KEY, "PT0S")));
-            longestSession.setText(languageData.getString("4") + formatTime(preferences.get(LONGEST_SESSION_KEY, "PT0S")));
-            totalTimeToday.setText(languageData.getString("5") + formatTime(preferences.get(TOTAL_TIME_TODAY_KEY, "PT0S")));
-            totalTimeThisWeek.setText(languageData.getString("6") + formatTime(preferences.get(TOTAL_TIME_WEEK_KEY, "PT0S")));
-
-            loadChartData(file, xySeriesChart, languageData);
+            runFileTask(work, (days, report) -> {
+                if (report.failure == null && !report.cancelled) {
+                    preferences.put(SAVED_DATA_KEY, selected.toAbsolutePath().toString());
+                    watchResults();
+                }
+                updateDataLabels(numberOfSessions, lastSessionDuration, longestSession, totalTimeToday, totalTimeThisWeek, sessionLengths, streaks, languageData);
+                configureChartData(languageData);
+            });
         });
 
-        HBox notesHBox = new HBox();
-        notesHBox.setAlignment(Pos.CENTER);
-
-        TextArea notesTxtArea = new TextArea();
-        notesTxtArea.setPrefColumnCount(20);
-        notesTxtArea.setPrefRowCount(10);
-        notesTxtArea.setFont(new Font("Serif", 17));
-        notesTxtArea.setText(preferences.get("notes", "add some text..."));
-        notesHBox.getChildren().add(notesTxtArea);
-
-        HBox.setHgrow(notesTxtArea, Priority.ALWAYS);
-        HBox.setMargin(notesTxtArea, new Insets(5));
-
-        Stage notesStage = new Stage();
-        notesStage.getIcons().add(new Image(getClass().getResourceAsStream("/notes.png")));
-        Scene notesScene = new Scene(notesHBox, 600, 400);
-        notesStage.setTitle(languageData.getString("25"));
-        notesStage.setScene(notesScene);
-
-        notesStage.setOnCloseRequest(windowEvent -> preferences.put("notes", notesTxtArea.getText()));
+        showNotes.setOnAction(event -> {
+            if (notesStage == null) {
+                createNotesStage(languageData);
+            }
+            notesStage.show();
+        });
 
-        showNotes.setOnAction(event -> notesStage.show());
+        showPlans.setOnAction(event -> {
+            if (plansStage == null) {
+                createPlansStage(languageData);
+            }
+            refreshPlans();
+            plansStage.show();
+        });
 
         startSession.setOnAction(event -> {
             if (startSession.getText().equals(languageData.getString("7"))) {
-                startSessionCounter(elapsedSessionTime, languageData);
+                elapsedFormatter.update(0);
+                elapsedSessionTime.setText(elapsedFormatter.getText().toString());
+                sessionTimer.start(seconds -> {
+                    if (elapsedFormatter.update(seconds)) {
+                        elapsedSessionTime.setText(elapsedFormatter.getText().toString());
+                    }
+                });
                 startSession.setText(languageData.getString("8"));
+                try {
+                    tracker.start(SessionTracker.LOCAL_USER);
+                } catch (IOException e) {
+                    showAlert(e.getClass().getSimpleName(), e.getMessage());
+                }
                 startTime = LocalTime.now();
                 sessionFinished.setText(languageData.getString("15"));
                 sessionStarted.setText(languageData.getString("14") + startTime.format(DateTimeFormatter.ofPattern("HH:mm:ss a")));
             } else {
-                sessionCounterAction.cancel(false);
+                sessionTimer.stop();
                 startSession.setText(languageData.getString("7"));
                 endTime = LocalTime.now();
                 sessionFinished.setText(languageData.getString("15") + endTime.format(DateTimeFormatter.ofPattern("HH:mm:ss a")));
-                Duration session = Duration.between(startTime, endTime);
-                totalThisWeek = Duration.parse(preferences.get(TOTAL_TIME_WEEK_KEY, "PT0S"));
-                String total_today = preferences.get(TOTAL_TIME_TODAY_KEY, "PT0S");
-                int sessions = preferences.getInt(SESSIONS_KEY, 0);
-                String longest_session = preferences.get(LONGEST_SESSION_KEY, "PT0S");
-
-                if (total_today.isEmpty()) {
-                    totalToday = session;
-                } else {
-                    Duration previousSession = Duration.parse(total_today);
-                    totalToday = session.plus(previousSession);
+                try {
+                    tracker.stop(SessionTracker.LOCAL_USER);
+                } catch (IOException e) {
+                    showAlert(e.getClass().getSimpleName(), e.getMessage());
                 }
-                totalThisWeek = totalThisWeek.plus(session);
-                storePreferences(totalToday, totalThisWeek, ++sessions, longest_session, session);
-                numberOfSessions.setText(languageData.getString("2") + sessions);
-                lastSessionDuration.setText(languageData.getString("3") + formatTime(session.toString()));
-                longestSession.setText(languageData.getString("4") + (Duration.parse(longest_session).compareTo(session) > 0
-                        ? formatTime(longest_session)
-                        : formatTime(session.toString())));
-                totalTimeToday.setText(languageData.getString("5") + formatTime(totalToday.toString()));
-                totalTimeThisWeek.setText(languageData.getString("6") + formatTime(totalThisWeek.toString()));
-                configureChartData(xySeriesChart, languageData, false);
+                updateDataLabels(numberOfSessions, lastSessionDuration, longestSession, totalTimeToday, totalTimeThisWeek, sessionLengths, streaks, languageData);
+                configureChartData(languageData);
             }
         });
 
         clearDailyData.setOnAction((event) -> {
             if (startSession.getText().equals(languageData.getString("7"))) {
-                preferences.put(SESSIONS_KEY, "PT0S");
-                preferences.put(LAST_SESSION_KEY, "PT0S");
-                preferences.put(LONGEST_SESSION_KEY, "PT0S");
-                preferences.put(TOTAL_TIME_TODAY_KEY, "PT0S");
-
-                numberOfSessions.setText(languageData.getString("2") + preferences.getInt(SESSIONS_KEY, 0));
-                lastSessionDuration.setText(languageData.getString("3") + formatTime(preferences.get(LAST_SESSION_KEY, "PT0S")));
-                longestSession.setText(languageData.getString("4") + formatTime(preferences.get(LONGEST_SESSION_KEY, "PT0S")));
-                totalTimeToday.setText(languageData.getString("5") + formatTime(preferences.get(TOTAL_TIME_TODAY_KEY, "PT0S")));
-                totalTimeThisWeek.setText(languageData.getString("6") + formatTime(preferences.get(TOTAL_TIME_WEEK_KEY, "PT0S")));
+                try {
+                    tracker.clearDay(SessionTracker.LOCAL_USER, epochDay(LocalDate.now()));
+                } catch (IOException e) {
+                    showAlert(e.getClass().getSimpleName(), e.getMessage());
+                }
+                updateDataLabels(numberOfSessions, lastSessionDuration, longestSession, totalTimeToday, totalTimeThisWeek, sessionLengths, streaks, languageData);
                 sessionStarted.setText(languageData.getString("14"));
                 sessionFinished.setText(languageData.getString("15"));
                 elapsedSessionTime.setText(languageData.getString("16"));
@@ -455,26 +565,38 @@ public class Scheduler extends Application {
         clearWeeklyData.setOnAction((event) -> {
             if (startSession.getText().equals(languageData.getString("7"))) {
                 try {
+                    tracker.clearAll(SessionTracker.LOCAL_USER);
                     String folderPath = preferences.get(SAVED_DATA_KEY, "");
-                    String notes = preferences.get("notes", "add some text...");
                     preferences.clear();
                     preferences.put(SAVED_DATA_KEY, folderPath);
-                    preferences.put("notes", notes);
-                } catch (BackingStoreException e) {
+                } catch (IOException e) {
                     e.printStackTrace();
                 }
-                numberOfSessions.setText(languageData.getString("2") + preferences.getInt(SESSIONS_KEY, 0));
-                lastSessionDuration.setText(languageData.getString("3") + formatTime(preferences.get(LAST_SESSION_KEY, "PT0S")));
-                longestSession.setText(languageData.getString("4") + formatTime(preferences.get(LONGEST_SESSION_KEY, "PT0S")));
-                totalTimeToday.setText(languageData.getString("5") + formatTime(preferences.get(TOTAL_TIME_TODAY_KEY, "PT0S")));
-                totalTimeThisWeek.setText(languageData.getString("6") + formatTime(preferences.get(TOTAL_TIME_WEEK_KEY, "PT0S")));
+                updateDataLabels(numberOfSessions, lastSessionDuration, longestSession, totalTimeToday, totalTimeThisWeek, sessionLengths, streaks, languageData);
                 sessionStarted.setText(languageData.getString("14"));
                 sessionFinished.setText(languageData.getString("15"));
                 elapsedSessionTime.setText(languageData.getString("16"));
-                configureChartData(xySeriesChart, languageData, true);
+                configureChartData(languageData);
             }
         });
 
+        Runnable refreshData = () -> {
+            updateDataLabels(numberOfSessions, lastSessionDuration, longestSession, totalTimeToday, totalTimeThisWeek, sessionLengths, streaks, languageData);
+            configureChartData(languageData);
+        };
+        // exports dropped into the saved results directory show up while the application runs
+        try {
+            resultsWatcher = ResultsWatcher.open(DATA_DIR.resolve("ingested.index"), journal, rollups, Platform::runLater, refreshData);
+            watchResults();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        // so do the sessions of the other devices, the shared directory may be slow to reach
+        if (deviceSync != null) {
+            executorService.scheduleWithFixedDelay(() -> ioExecutor.execute(() -> syncDevices(refreshData)), 0,
+                    SYNC_SECONDS, TimeUnit.SECONDS);
+        }
+
         BorderPane.setMargin(controlBox, new Insets(20, 0, 20, 0));
         BorderPane.setMargin(centerBox, new Insets(20, 20, 10, 10));
 
@@ -488,84 +610,394 @@ public class Scheduler extends Application {
         return scene;
     }
 
-    private void storePreferences(Duration totalToday, Duration totalTimeThisWeek, int sessions, String longest_session, Duration session) {
-        preferences.put(TOTAL_TIME_TODAY_KEY, totalToday.toString());
-        preferences.put(TOTAL_TIME_WEEK_KEY, totalTimeThisWeek.toString());
-        preferences.putInt(SESSIONS_KEY, sessions);
-        preferences.put(LONGEST_SESSION_KEY,
-                Duration.parse(longest_session).compareTo(session) > 0
-                        ? longest_session
-                        : session.toString());
-        preferences.put(LAST_SESSION_KEY, session.toString());
-        preferences.put(LocalDate.now().getDayOfWeek().toString(), totalToday.toString());
+    // the chart is only built once it is first shown
+    private void createChart(ResourceBundle languageData) {
+        // set up a bar chart
+        xAxis = new CategoryAxis();
+        xAxis.setLabel(languageData.getString("20"));
+        xAxis.getStyleClass().add("axis-label");
+        xAxis.setId("tLabelX");
+
+        yAxis = new NumberAxis();
+        yAxis.setLabel(languageData.getString("21"));
+        yAxis.getStyleClass().add("axis-label");
+        yAxis.setId("tLabelY");
+
+        BarChart barChart = new BarChart(xAxis, yAxis);
+        barChart.setLegendVisible(false);
+        barChart.getStyleClass().add("chart-plot-background");
+
+        XYChart.Series<String, Number> xySeriesChart = new XYChart.Series<>();
+        barChart.getData().add(xySeriesChart);
+        try {
+            chartModel = new ChartModel(xySeriesChart, rollups, tracker.history(SessionTracker.LOCAL_USER), languageData);
+        } catch (IOException e) { // the local user was opened on startup
+            throw new UncheckedIOException(e);
+        }
+
+        // zoom of the chart: this week, this month, this year or the whole history
+        ToggleGroup chartViews = new ToggleGroup();
+        HBox chartViewBox = new HBox();
+        chartViewBox.setAlignment(Pos.CENTER);
+        chartViewBox.setSpacing(5);
+        for (ChartModel.View view : ChartModel.View.values()) {
+            ToggleButton viewButton = new ToggleButton(languageData.getString(Integer.toString(26 + view.ordinal())));
+            viewButton.setToggleGroup(chartViews);
+            viewButton.setSelected(view == chartModel.getView());
+            viewButton.setOnAction(event -> {
+                viewButton.setSelected(true); // one view is always selected
+                xAxis.setLabel(view == ChartModel.View.WEEK ? languageData.getString("20") : viewButton.getText());
+                updateYAxis(chartModel.show(view), languageData);
+            });
+            chartViewBox.getChildren().add(viewButton);
+        }
+
+        VBox.setVgrow(barChart, Priority.ALWAYS);
+        chartBox = new VBox();
+        VBox.setVgrow(chartBox, Priority.ALWAYS);
+        chartBox.setAlignment(Pos.CENTER);
+        chartBox.getChildren().addAll(chartViewBox, barChart);
     }
 
-    private String formatTime(String text) {
-        Duration duration = Duration.parse(text);
-        long s = duration.getSeconds();
-        return (s / 3600 > 0) ? String.format("%dh, %01dm, %01ds", s / 3600, (s % 3600) / 60, (s % 60))
-                : (s / 60 > 0) ? String.format("%01dm, %01ds", (s % 3600) / 60, (s % 60)) : String.format("%01ds", (s % 60));
+    private void createNotesStage(ResourceBundle languageData) {
+        HBox notesHBox = new HBox();
+        notesHBox.setAlignment(Pos.CENTER);
+
+        TextArea notesTxtArea = new TextArea();
+        notesTxtArea.setPrefColumnCount(20);
+        notesTxtArea.setPrefRowCount(10);
+        notesTxtArea.setFont(new Font("Serif", 17));
+        notesTxtArea.setDisable(true); // until the notes are read on the I/O executor
+        notes.thenApplyAsync(store -> {
+            try {
+                return store.isEmpty() ? "add some text..." : store.load();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, ioExecutor).whenComplete((text, e) -> Platform.runLater(() -> {
+            if (e != null) { // nothing is saved, so the notes on the disk are not overwritten
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof UncheckedIOException) {
+                    cause = cause.getCause();
+                }
+                showAlert(cause.getClass().getSimpleName(), cause.getMessage());
+                return;
+            }
+            notesTxtArea.setText(text);
+            notesTxtArea.setDisable(false);
+            NotesStore store = notes.join();
+            // every change schedules a save, the text itself is only read once the save is due
+            notesTxtArea.textProperty().addListener(observable -> store.saveLater(notesTxtArea::getText));
+        }));
+        notesHBox.getChildren().add(notesTxtArea);
+
+        HBox.setHgrow(notesTxtArea, Priority.ALWAYS);
+        HBox.setMargin(notesTxtArea, new Insets(5));
+
+        notesStage = new Stage();
+        notesStage.getIcons().add(icon("/notes.png"));
+        Scene notesScene = new Scene(notesHBox, 600, 400);
+        notesStage.setTitle(languageData.getString("25"));
+        notesStage.setScene(notesScene);
     }
 
-    private void startSessionCounter(Label text, ResourceBundle myBundle) {
-        class Runner {
-            Duration duration = Duration.ofSeconds(0);
-            void runTask() {
-                sessionCounterAction = executorService.scheduleAtFixedRate(() -> {
-                    Platform.runLater(() -> {
-                        text.setText(myBundle.getString("16")
-                                + formatTime((duration = duration.plusSeconds(1)).toString()));
-                    });
-                }, 0, 1, TimeUnit.SECONDS);
+    private void createPlansStage(ResourceBundle languageData) {
+        DateTimeFormatter nextFormatter = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.SHORT);
+        plansList = new ListView<>();
+        plansList.setCellFactory(list -> new ListCell<>() {
+            @Override
+            protected void updateItem(StudyPlanner.Plan plan, boolean empty) {
+                super.updateItem(plan, empty);
+                if (empty || plan == null) {
+                    setText(null);
+                    return;
+                }
+                long next = planner.nextEventMillis(plan.id);
+                setText(languageData.getString(plan.kind.toString()) + ": " + plan.title
+                        + (next == Long.MAX_VALUE ? "" : languageData.getString("43")
+                        + Instant.ofEpochMilli(next).atZone(ZoneId.systemDefault()).format(nextFormatter)));
             }
+        });
+
+        ChoiceBox<StudyPlanner.Kind> kind = new ChoiceBox<>();
+        kind.getItems().addAll(StudyPlanner.Kind.values());
+        kind.setValue(StudyPlanner.Kind.STUDY_BLOCK);
+        kind.setConverter(new javafx.util.StringConverter<>() {
+            @Override
+            public String toString(StudyPlanner.Kind value) {
+                return value == null ? "" : languageData.getString(value.toString());
+            }
+
+            @Override
+            public StudyPlanner.Kind fromString(String text) {
+                return null; // not editable
+            }
+        });
+        DatePicker date = new DatePicker(LocalDate.now());
+        TextField time = new TextField(LocalTime.now().plusHours(1).withMinute(0).format(DateTimeFormatter.ofPattern("HH:mm")));
+        time.setPrefColumnCount(5);
+        TextField title = new TextField();
+        title.setPromptText(languageData.getString("37"));
+        Spinner<Integer> minutes = new Spinner<>(1, 24 * 60, 60); // block length, or work time of a Pomodoro
+        Spinner<Integer> breakMinutes = new Spinner<>(1, 120, 5);
+        Spinner<Integer> cycles = new Spinner<>(1, 24, 4);
+        CheckBox daily = new CheckBox(languageData.getString("42"));
+        for (Spinner<Integer> spinner : List.of(minutes, breakMinutes, cycles)) {
+            spinner.setPrefWidth(80);
+        }
+        // only the fields of the chosen kind are enabled
+        Runnable enableFields = () -> {
+            minutes.setDisable(kind.getValue() == StudyPlanner.Kind.REMINDER);
+            breakMinutes.setDisable(kind.getValue() != StudyPlanner.Kind.POMODORO);
+            cycles.setDisable(kind.getValue() != StudyPlanner.Kind.POMODORO);
+            daily.setDisable(kind.getValue() != StudyPlanner.Kind.REMINDER);
+        };
+        kind.setOnAction(event -> enableFields.run());
+        enableFields.run();
+
+        Button add = new Button(languageData.getString("35"));
+        add.setOnAction(event -> {
+            long start;
+            try {
+                LocalDate day = date.getValue() != null ? date.getValue() : LocalDate.now();
+                start = day.atTime(LocalTime.parse(time.getText().trim()))
+                        .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                showAlert(languageData.getString("38"), time.getText());
+                return;
+            }
+            String text = title.getText().trim().isEmpty() ? languageData.getString(kind.getValue().toString())
+                    : title.getText().trim();
+            long work = TimeUnit.MINUTES.toMillis(minutes.getValue());
+            switch (kind.getValue()) {
+                case REMINDER:
+                    planner.addReminder(start, daily.isSelected() ? 1 : 0, text);
+                    break;
+                case STUDY_BLOCK:
+                    planner.addStudyBlock(start, work, text);
+                    break;
+                default:
+                    planner.addPomodoro(start, work, TimeUnit.MINUTES.toMillis(breakMinutes.getValue()),
+                            cycles.getValue(), text);
+            }
+            title.clear();
+            refreshPlans();
+        });
+        Button remove = new Button(languageData.getString("36"));
+        remove.disableProperty().bind(plansList.getSelectionModel().selectedItemProperty().isNull());
+        remove.setOnAction(event -> {
+            planner.cancel(plansList.getSelectionModel().getSelectedItem().id);
+            refreshPlans();
+        });
+
+        HBox whenBox = new HBox(5, kind, date, time, title);
+        whenBox.setAlignment(Pos.CENTER_LEFT);
+        HBox.setHgrow(title, Priority.ALWAYS);
+        HBox lengthBox = new HBox(5, new Label(languageData.getString("39")), minutes,
+                new Label(languageData.getString("40")), breakMinutes, new Label(languageData.getString("41")), cycles,
+                daily);
+        lengthBox.setAlignment(Pos.CENTER_LEFT);
+        HBox buttonBox = new HBox(10, add, remove);
+        buttonBox.setAlignment(Pos.CENTER_RIGHT);
+
+        VBox plansBox = new VBox(10, plansList, whenBox, lengthBox, buttonBox);
+        VBox.setVgrow(plansList, Priority.ALWAYS);
+        plansBox.setPadding(new Insets(10));
+
+        plansStage = new Stage();
+        plansStage.getIcons().add(icon("/icon.png"));
+        plansStage.setTitle(languageData.getString("34"));
+        plansStage.setScene(new Scene(plansBox, 700, 400));
+    }
+
+    // plans fire and end on the timing wheel, the list is read again whenever it may have changed
+    private void refreshPlans() {
+        if (plansList == null) {
+            return;
         }
-        new Runner().runTask();
+        List<StudyPlanner.Plan> plans = planner.getPlans();
+        plans.sort(Comparator.comparingLong(plan -> planner.nextEventMillis(plan.id)));
+        plansList.getItems().setAll(plans);
+    }
+
+    private void updateDataLabels(Label numberOfSessions, Label lastSessionDuration, Label longestSession,
+                                  Label totalTimeToday, Label totalTimeThisWeek, Label sessionLengths, Label streaks,
+                                  ResourceBundle languageData) {
+        int today = epochDay(LocalDate.now());
+        labelText.setLength(0);
+        setText(numberOfSessions, labelText.append(languageData.getString("2")).append(rollups.sessions(today)));
+        setDuration(lastSessionDuration, languageData.getString("3"), rollups.lastSession(today));
+        setDuration(longestSession, languageData.getString("4"), rollups.longestSession(today));
+        setDuration(totalTimeToday, languageData.getString("5"), rollups.dayTotal(today));
+        setDuration(totalTimeThisWeek, languageData.getString("6"), rollups.weekTotal(today));
+        labelText.setLength(0);
+        labelText.append(languageData.getString("30"));
+        DurationFormatter.appendTo(labelText, statistics.percentile(50) / 1000).append(" / ");
+        DurationFormatter.appendTo(labelText, statistics.percentile(90) / 1000).append(" / ");
+        setText(sessionLengths, DurationFormatter.appendTo(labelText, statistics.percentile(99) / 1000));
+        labelText.setLength(0);
+        setText(streaks, labelText.append(languageData.getString("31")).append(statistics.currentStreak(today))
+                .append(" / ").append(statistics.longestStreak()).append(languageData.getString("32")));
+    }
+
+    private void setDuration(Label label, String prefix, long millis) {
+        labelText.setLength(0);
+        setText(label, DurationFormatter.appendTo(labelText.append(prefix), millis / 1000));
+    }
+
+    // a label is only touched, and a String only created, when its text changes
+    private static void setText(Label label, CharSequence text) {
+        if (!label.getText().contentEquals(text)) {
+            label.setText(text.toString());
+        }
+    }
+
+    private static int epochDay(LocalDate date) {
+        return (int) date.toEpochDay();
     }
 
-    private void configureChartData(XYChart.Series<String, Number> xySeriesChart, ResourceBundle languageData, boolean reset) {
-        Arrays.stream(DayOfWeek.values())
-                .forEach(dayOfWeek -> xySeriesChart.getData().add(new XYChart.Data(languageData.getString(dayOfWeek.toString()),
-                        reset ? 0 : calculateTime(Duration.parse(preferences.get(dayOfWeek.toString(), "PT0S"))))));
-        long maxSeconds = Arrays.stream(DayOfWeek.values())
-                .map(dayOfWeek -> Duration.parse(preferences.get(dayOfWeek.toString(), "PT0S")))
-                .mapToLong(Duration::getSeconds)
-                .max().orElse(0);
+    // exports are named after their day, e.g. 2021-04-12.txt
+    private static LocalDate exportDate(File file) {
+        try {
+            return LocalDate.parse(file.getName().replace(".txt", ""));
+        } catch (DateTimeParseException e) {
+            return LocalDate.now();
+        }
+    }
+
+    private void compactPreferences() {
+        try {
+            int reclaimed = legacyPreferences.compact(LocalDate.now(), PREFERENCES_RETENTION_DAYS);
+            SchedulerMetrics.get().reclaimedPreferenceKeys(reclaimed);
+        } catch (RuntimeException e) { // would cancel the daily runs
+            e.printStackTrace();
+        }
+    }
+
+    private void configureChartData(ResourceBundle languageData) {
+        if (chartModel != null) {
+            updateYAxis(chartModel.refresh(), languageData);
+        }
+    }
+
+    private void updateYAxis(long maxMillis, ResourceBundle languageData) {
+        long maxSeconds = maxMillis / 1000;
         if (Duration.ofSeconds(maxSeconds).toMinutes() > 59) {
             yAxis.setLabel(languageData.getString("21") + "(" + languageData.getString("24") + ")");
         } else if (maxSeconds > 59) {
             yAxis.setLabel(languageData.getString("21") + "(" + languageData.getString("23") + ")");
         }
+    }
+
+    // the directory of the last saved or loaded file, if it is still there
+    private void setInitialDirectory(FileChooser fileChooser) {
+        File dir = new File(preferences.get(SAVED_DATA_KEY, "")).getParentFile();
+        if (dir != null && dir.isDirectory()) {
+            fileChooser.setInitialDirectory(dir);
+        }
+    }
 
-        for (XYChart.Data<String, Number> data : xySeriesChart.getData()) {
-            Node bar = data.getNode();
-            bar.getStyleClass().add("white-bar");
+    /**
+     * Runs a save or load on the I/O executor with the progress bar shown, cancelling the one in
+     * progress. Whatever went wrong is reported in a single alert once the task is over, a
+     * cancelled task reports nothing; then the completion runs on the FX thread.
+     */
+    private <T> void runFileTask(FileTask.Work<T> work, FileTask.Completion<T> completion) {
+        if (runningTask != null) {
+            runningTask.cancel();
         }
+        FileTask<T> task = new FileTask<>(Platform::runLater, (done, total) -> fileProgress.setProgress((double) done / total));
+        runningTask = task;
+        fileProgress.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+        fileProgress.setVisible(true);
+        cancelFileTask.setVisible(true);
+        task.start(ioExecutor, work, (result, report) -> {
+            if (runningTask == task) {
+                runningTask = null;
+                fileProgress.setVisible(false);
+                cancelFileTask.setVisible(false);
+            }
+            if (!report.cancelled && report.failure != null) {
+                showAlert(report.failure.getClass().getSimpleName(), report.failure.getMessage());
+            } else if (!report.cancelled && !report.errors.isEmpty()) {
+                showAlert(report.errors.size() + " file(s) could not be read", String.join("\n", report.errors));
+            }
+            completion.done(result, report);
+        });
     }
 
-    private void loadChartData(File selected, XYChart.Series<String, Number> xySeriesChart, ResourceBundle languageData) {
-        for (DayOfWeek day : DayOfWeek.values()) { // clear previous data
-            preferences.put(day.toString(), "PT0S");
+    /**
+     * Imports the selected export and the other exports in its directory, and returns the number
+     * of days imported. Only the exports that are new or changed since they were last ingested are
+     * parsed, the days of the others are written again from the index if the history lost them.
+     * Every file is parsed before the first day is written, so a cancelled import leaves the
+     * history as it was.
+     */
+    private int importResults(FileTask<Integer> task, Path selected, LocalDate date) throws Exception {
+        int days = 0;
+        Path dir = selected.getParent();
+        if (dir != null && resultsWatcher != null) {
+            BulkImporter importer = new BulkImporter(BulkImporter.DEFAULT_PARALLELISM);
+            task.onCancel(importer::cancel);
+            List<String> errors = new ArrayList<>();
+            days = resultsWatcher.ingest(dir, true, importer, task::progress, errors);
+            task.errors(errors);
         }
-        DayOfWeek selectedDay = LocalDate.parse(selected.getName().replace(".txt", "")).getDayOfWeek(); // get selected day
-        Optional.ofNullable(selected.toPath().getParent()).ifPresent(dir -> {
+        synchronized (journal) {
+            if (task.isCancelled()) {
+                return days;
+            }
             try {
-                Files.list(dir).forEach(f -> {
-                    try {
-                        DayOfWeek dayOfWeek = LocalDate.parse(f.getFileName().toString().replace(".txt", "")).getDayOfWeek();
-                        String studyTime = Files.lines(f).filter(l -> l.startsWith("Ukupno vreme ucenja danas: ") || l.startsWith("Total study time today: "))
-                                .map(l -> l.substring(l.indexOf(": ") + 2)).collect(Collectors.joining());
-                        if (dayOfWeek.getValue() <= selectedDay.getValue()) { // store only days of the week before the selected day
-                            preferences.put(dayOfWeek.toString(), studyTime);
-                        }
-                    } catch (IOException e) {
-                        showAlert(e.getClass().getSimpleName(), e.getMessage());
-                    }
-                });
+                SessionSnapshot.readExport(journal, selected, date); // all figures of the day, not just the total
+                days++;
             } catch (IOException e) {
-                showAlert(e.getClass().getSimpleName(), e.getMessage());
+                task.error(selected, e);
             }
-            configureChartData(xySeriesChart, languageData, false);
-        });
+        }
+        return days;
+    }
+
+    private void syncDevices(Runnable onReceived) {
+        try {
+            if (deviceSync.sync() > 0) {
+                Platform.runLater(onReceived);
+            }
+        } catch (IOException e) { // the shared directory may be offline, the next sync catches up
+            e.printStackTrace();
+        }
+    }
+
+    // follows the directory of the last saved or loaded file
+    private void watchResults() {
+        File dir = new File(preferences.get(SAVED_DATA_KEY, "")).getParentFile();
+        if (resultsWatcher != null && dir != null) {
+            resultsWatcher.watch(dir.toPath());
+        }
+    }
+
+    // non-blocking notification, several plans may fire at once
+    private void showPlanEvent(StudyPlanner.Plan plan, StudyPlanner.Event event) {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle(plannerLanguage != null ? plannerLanguage.getString("0") : "Scheduler");
+        alert.setHeaderText(plan.title);
+        alert.setContentText(plannerLanguage != null ? plannerLanguage.getString(event.toString()) : event.toString());
+        alert.show();
+        refreshPlans();
+    }
+
+    // icons are decoded on the background loader of Image and shared by every node that shows them
+    private Image icon(String name) {
+        return icons.computeIfAbsent(name, key -> new Image(getClass().getResource(key).toExternalForm(), true));
+    }
+
+    // ends the phase once the scene has been laid out and drawn for the first time
+    private static void doneOnFirstFrame(Scene scene, StartupEvent phase) {
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            scene.removePostLayoutPulseListener(listener[0]);
+            phase.done();
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
     }
 
     private void showAlert(String headerTxt, String contentTxt) {
@@ -576,12 +1008,21 @@ public class Scheduler extends Application {
         alert.showAndWait();
     }
 
-    private double calculateTime(Duration duration) {
+    static double calculateTime(Duration duration) {
         return duration.toMinutes() > 59 ? duration.toHours() + ((duration.toMinutes() - Duration.ofHours(duration.toHours())
                 .toMinutes())) / 60d : duration.toMinutes() / 60d;
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--headless")) {
+            SessionServer.run(args, DATA_DIR.resolve("server")); // never the journal the desktop client writes
+            return;
+        }
+        if (args.length == 3 && args[0].equals("--convert")) { // --convert <export or directory> <snapshot>
+            int days = SessionSnapshot.convert(Path.of(args[1]), Path.of(args[2]));
+            System.out.println(days + " day(s) written to " + args[2]);
+            return;
+        }
         launch(args);
     }
 }
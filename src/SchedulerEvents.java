@@ -0,0 +1,113 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder events of the main operations, next to {@link StartupEvent}. They cost nothing
+ * unless a recording is running, e.g. {@code jcmd <pid> JFR.start filename=scheduler.jfr}.
+ * Events that time an operation have its duration as their own.
+ */
+public final class SchedulerEvents {
+    private SchedulerEvents() {
+    }
+
+    @Name("scheduler.SessionStart")
+    @Label("Session Start")
+    @Category("Scheduler")
+    @StackTrace(false)
+    public static class SessionStart extends Event {
+        @Label("User")
+        String user;
+
+        public SessionStart(String user) {
+            this.user = user;
+        }
+    }
+
+    @Name("scheduler.SessionStop")
+    @Label("Session Stop")
+    @Category("Scheduler")
+    @Description("A finished session, the duration is the time taken to journal it")
+    @StackTrace(false)
+    public static class SessionStop extends Event {
+        @Label("User")
+        String user;
+
+        @Label("Session Length")
+        @Timespan(Timespan.MILLISECONDS)
+        long lengthMillis;
+
+        public SessionStop(String user) {
+            this.user = user;
+        }
+    }
+
+    @Name("scheduler.PreferencesFlush")
+    @Label("Preferences Flush")
+    @Category("Scheduler")
+    @Description("Dirty preferences written and synced to the backing store")
+    @StackTrace(false)
+    public static class PreferencesFlush extends Event {
+        @Label("Keys")
+        int keys;
+
+        @Label("Synced")
+        boolean synced;
+    }
+
+    @Name("scheduler.Import")
+    @Label("Import")
+    @Category("Scheduler")
+    @Description("Parsing of a directory of exports")
+    @StackTrace(false)
+    public static class Import extends Event {
+        @Label("Files")
+        int files;
+
+        @Label("Errors")
+        int errors;
+
+        @Label("Parse Time")
+        @Description("Time spent parsing, summed over the worker threads")
+        @Timespan(Timespan.NANOSECONDS)
+        long parseNanos;
+
+        @Label("Cancelled")
+        boolean cancelled;
+    }
+
+    @Name("scheduler.ChartRefresh")
+    @Label("Chart Refresh")
+    @Category("Scheduler")
+    @StackTrace(false)
+    public static class ChartRefresh extends Event {
+        @Label("View")
+        String view;
+
+        @Label("Bars")
+        int bars;
+
+        @Label("Rebuilt")
+        @Description("The bars were replaced instead of updated")
+        boolean rebuilt;
+    }
+
+    @Name("scheduler.TimerTick")
+    @Label("Timer Tick")
+    @Category("Scheduler")
+    @Description("Elapsed time shown by the session timer")
+    @StackTrace(false)
+    public static class TimerTick extends Event {
+        @Label("Elapsed Seconds")
+        long elapsedSeconds;
+
+        @Label("Lag")
+        @Description("Time from the second being reached to it being shown")
+        @Timespan(Timespan.NANOSECONDS)
+        long lagNanos;
+    }
+}
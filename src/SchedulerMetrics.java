@@ -0,0 +1,189 @@
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters and latency histograms of the application, registered as the MBean
+ * {@value #OBJECT_NAME} so they can be watched with JConsole or read by any local JMX client.
+ * The headless server also serves them at {@code GET /metrics}. Components record into the
+ * single instance; the session counters are read from the registered {@link SessionTracker}.
+ */
+public class SchedulerMetrics implements SchedulerMetricsMBean {
+    public static final String OBJECT_NAME = "scheduler:type=SchedulerMetrics";
+    private static final SchedulerMetrics INSTANCE = new SchedulerMetrics();
+
+    final LatencyHistogram persistence = new LatencyHistogram(); // flushes of the preferences
+    final LatencyHistogram journalAppends = new LatencyHistogram();
+    final LatencyHistogram chartRefreshes = new LatencyHistogram();
+    final LatencyHistogram tickLag = new LatencyHistogram();
+    final LatencyHistogram importParses = new LatencyHistogram(); // one per file
+    private final LongAdder importedFiles = new LongAdder();
+    private final LongAdder reclaimedPreferenceKeys = new LongAdder(); // by compaction since the start
+    private volatile SessionTracker tracker;
+
+    private SchedulerMetrics() {
+    }
+
+    public static SchedulerMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Reads the session counters from the tracker and registers the MBean, once.
+     */
+    public static void register(SessionTracker tracker) {
+        INSTANCE.tracker = tracker;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // registered before, only the tracker changes
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    void importedFile(long parseNanos) {
+        importParses.record(parseNanos);
+        importedFiles.increment();
+    }
+
+    void reclaimedPreferenceKeys(int keys) {
+        reclaimedPreferenceKeys.add(keys);
+    }
+
+    @Override
+    public int getActiveSessions() {
+        SessionTracker tracker = this.tracker;
+        return tracker == null ? 0 : tracker.getActiveSessions();
+    }
+
+    @Override
+    public int getOpenUsers() {
+        SessionTracker tracker = this.tracker;
+        return tracker == null ? 0 : tracker.getOpenUsers();
+    }
+
+    @Override
+    public long getCompletedSessions() {
+        SessionTracker tracker = this.tracker;
+        return tracker == null ? 0 : tracker.getCompletedSessions();
+    }
+
+    @Override
+    public long getTrackedMillis() {
+        SessionTracker tracker = this.tracker;
+        return tracker == null ? 0 : tracker.getTrackedMillis();
+    }
+
+    @Override
+    public int getSessionsToday() {
+        SessionTracker tracker = this.tracker;
+        return tracker == null ? 0 : tracker.sessionsOn((int) LocalDate.now().toEpochDay());
+    }
+
+    @Override
+    public long getPersistenceFlushes() {
+        return persistence.getCount();
+    }
+
+    @Override
+    public long getPersistenceP50Micros() {
+        return micros(persistence.percentile(50));
+    }
+
+    @Override
+    public long getPersistenceP99Micros() {
+        return micros(persistence.percentile(99));
+    }
+
+    @Override
+    public long getPersistenceMaxMicros() {
+        return micros(persistence.getMax());
+    }
+
+    @Override
+    public long getJournalAppends() {
+        return journalAppends.getCount();
+    }
+
+    @Override
+    public long getJournalAppendP99Micros() {
+        return micros(journalAppends.percentile(99));
+    }
+
+    @Override
+    public long getChartRefreshes() {
+        return chartRefreshes.getCount();
+    }
+
+    @Override
+    public long getChartRefreshP99Micros() {
+        return micros(chartRefreshes.percentile(99));
+    }
+
+    @Override
+    public long getTimerTickLagP99Millis() {
+        return TimeUnit.NANOSECONDS.toMillis(tickLag.percentile(99));
+    }
+
+    @Override
+    public long getTimerTickLagMaxMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(tickLag.getMax());
+    }
+
+    @Override
+    public long getImportedFiles() {
+        return importedFiles.sum();
+    }
+
+    @Override
+    public long getImportParseP99Micros() {
+        return micros(importParses.percentile(99));
+    }
+
+    @Override
+    public long getReclaimedPreferenceKeys() {
+        return reclaimedPreferenceKeys.sum();
+    }
+
+    @Override
+    public void resetLatencies() {
+        persistence.reset();
+        journalAppends.reset();
+        chartRefreshes.reset();
+        tickLag.reset();
+        importParses.reset();
+    }
+
+    /**
+     * Every attribute as a "name value" line, for scraping.
+     */
+    public String toText() {
+        return "activeSessions " + getActiveSessions() + "\n"
+                + "openUsers " + getOpenUsers() + "\n"
+                + "completedSessions " + getCompletedSessions() + "\n"
+                + "trackedMillis " + getTrackedMillis() + "\n"
+                + "sessionsToday " + getSessionsToday() + "\n"
+                + "persistenceFlushes " + getPersistenceFlushes() + "\n"
+                + "persistenceP50Micros " + getPersistenceP50Micros() + "\n"
+                + "persistenceP99Micros " + getPersistenceP99Micros() + "\n"
+                + "persistenceMaxMicros " + getPersistenceMaxMicros() + "\n"
+                + "journalAppends " + getJournalAppends() + "\n"
+                + "journalAppendP99Micros " + getJournalAppendP99Micros() + "\n"
+                + "chartRefreshes " + getChartRefreshes() + "\n"
+                + "chartRefreshP99Micros " + getChartRefreshP99Micros() + "\n"
+                + "timerTickLagP99Millis " + getTimerTickLagP99Millis() + "\n"
+                + "timerTickLagMaxMillis " + getTimerTickLagMaxMillis() + "\n"
+                + "importedFiles " + getImportedFiles() + "\n"
+                + "importParseP99Micros " + getImportParseP99Micros() + "\n"
+                + "reclaimedPreferenceKeys " + getReclaimedPreferenceKeys() + "\n";
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
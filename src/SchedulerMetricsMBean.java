@@ -0,0 +1,43 @@
+/**
+ * Management interface of {@link SchedulerMetrics}. Latencies are in microseconds except where
+ * the name says otherwise; percentiles are at most 12.5% above the true value.
+ */
+public interface SchedulerMetricsMBean {
+    int getActiveSessions();
+
+    int getOpenUsers();
+
+    long getCompletedSessions();
+
+    long getTrackedMillis();
+
+    int getSessionsToday();
+
+    long getPersistenceFlushes();
+
+    long getPersistenceP50Micros();
+
+    long getPersistenceP99Micros();
+
+    long getPersistenceMaxMicros();
+
+    long getJournalAppends();
+
+    long getJournalAppendP99Micros();
+
+    long getChartRefreshes();
+
+    long getChartRefreshP99Micros();
+
+    long getTimerTickLagP99Millis();
+
+    long getTimerTickLagMaxMillis();
+
+    long getImportedFiles();
+
+    long getImportParseP99Micros();
+
+    long getReclaimedPreferenceKeys();
+
+    void resetLatencies();
+}
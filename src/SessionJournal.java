@@ -0,0 +1,220 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Append-only journal of study sessions backed by a memory-mapped file.
+ * Every record has the same size (start and end epoch-millis, epoch-day and flags), so
+ * ending a session is a single sequential write into the mapping. Clearing results does
+ * not rewrite anything either: a marker record is appended and every reader skips the
+ * sessions that a later marker covers.
+ */
+public class SessionJournal implements Closeable {
+    public static final int FLAG_SESSION = 0;
+    public static final int FLAG_IMPORTED = 1; // session synthesized from an imported text file
+    public static final int FLAG_CLEAR_DAY = 2; // marker, drops earlier records of the same day
+    public static final int FLAG_CLEAR_ALL = 4; // marker, drops all earlier records
+    public static final int FLAG_SYNCED = 8; // session received from another device, see DeviceSync
+    public static final int FLAG_RESTORED = 16; // session brought back by SessionSnapshot#restore, not synced again
+
+    static final int RECORD_SIZE = 32;
+    static final int HEADER_SIZE = 16;
+    private static final int MAGIC = 0x534A524E; // "SJRN"
+    private static final int VERSION = 1;
+    private static final int COMMIT_MARKER = 0x0C0FFEE0; // written last, a torn record never carries it
+    private static final int GROW_RECORDS = 4096; // records added to the mapping when it fills up
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity; // records that fit into the current mapping
+    private int count; // valid records
+    private final List<RecordVisitor> subscribers = new CopyOnWriteArrayList<>();
+
+    private SessionJournal(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Opens the journal at the given path, creating it if needed. Records left behind by
+     * a crash in the middle of a write fail the checksum and are discarded, so the journal
+     * always resumes after the last complete session.
+     */
+    public static SessionJournal open(Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        SessionJournal journal = new SessionJournal(channel);
+        try {
+            journal.recover();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return journal;
+    }
+
+    private void recover() throws IOException {
+        long size = channel.size();
+        int records = size <= HEADER_SIZE ? 0 : (int) ((size - HEADER_SIZE) / RECORD_SIZE);
+        map(Math.max(records, GROW_RECORDS));
+
+        if (size < HEADER_SIZE || buffer.getInt(0) == 0) { // new file
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+        } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported session journal format");
+        }
+
+        count = 0;
+        while (count < capacity && isCommitted(count)) {
+            count++;
+        }
+        // wipe the remains of a torn write, pages after it may have reached the disk before it did
+        for (int offset = offset(count); offset < offset(capacity); offset += 8) {
+            if (buffer.getLong(offset) != 0) {
+                buffer.putLong(offset, 0);
+            }
+        }
+    }
+
+    private void map(int records) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) records * RECORD_SIZE);
+        capacity = records;
+    }
+
+    private static int offset(int index) {
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    private boolean isCommitted(int index) {
+        int offset = offset(index);
+        return buffer.getInt(offset + 28) == COMMIT_MARKER
+                && buffer.getInt(offset + 24) == checksum(buffer.getLong(offset), buffer.getLong(offset + 8),
+                buffer.getInt(offset + 16), buffer.getInt(offset + 20));
+    }
+
+    private static int checksum(long start, long end, int epochDay, int flags) {
+        long h = start * 0x9E3779B97F4A7C15L;
+        h = (h ^ end) * 0x9E3779B97F4A7C15L;
+        h = (h ^ ((long) epochDay << 32 | (flags & 0xFFFFFFFFL))) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Appends one record. The write lands in the page cache immediately, so it survives a
+     * crash of the application; {@link #close()} forces it to the disk.
+     */
+    public synchronized void append(long startMillis, long endMillis, int epochDay, int flags) throws IOException {
+        if (count == capacity) {
+            map(capacity + GROW_RECORDS);
+        }
+        int offset = offset(count);
+        buffer.putLong(offset, startMillis);
+        buffer.putLong(offset + 8, endMillis);
+        buffer.putInt(offset + 16, epochDay);
+        buffer.putInt(offset + 20, flags);
+        buffer.putInt(offset + 24, checksum(startMillis, endMillis, epochDay, flags));
+        buffer.putInt(offset + 28, COMMIT_MARKER);
+        count++;
+        for (RecordVisitor subscriber : subscribers) {
+            subscriber.visit(startMillis, endMillis, epochDay, flags);
+        }
+    }
+
+    public void appendSession(long startMillis, long endMillis, int epochDay) throws IOException {
+        append(startMillis, endMillis, epochDay, FLAG_SESSION);
+    }
+
+    public void clearDay(int epochDay) throws IOException {
+        long now = System.currentTimeMillis();
+        append(now, now, epochDay, FLAG_CLEAR_DAY);
+    }
+
+    public void clearAll() throws IOException {
+        long now = System.currentTimeMillis();
+        append(now, now, 0, FLAG_CLEAR_ALL);
+    }
+
+    /**
+     * Replaces a day with the aggregates read from an exported text file. The aggregates are
+     * turned into the given number of sessions so that the count, total, longest and last
+     * session of the day come out as they were exported. Imported sessions only carry their
+     * length, they are laid out one after another from midnight UTC of that day.
+     */
+    public synchronized void importDay(int epochDay, int sessions, long lastMillis, long longestMillis,
+                                       long totalMillis) throws IOException {
+        clearDay(epochDay);
+        if (sessions <= 0 || totalMillis <= 0) {
+            return;
+        }
+        long[] lengths = new long[sessions];
+        if (sessions == 1) {
+            lengths[0] = totalMillis;
+        } else {
+            long rest = Math.max(totalMillis - longestMillis - lastMillis, 0);
+            for (int i = 0; i < sessions - 2; i++) {
+                lengths[i] = rest / (sessions - 2) + (i < rest % (sessions - 2) ? 1 : 0);
+            }
+            lengths[sessions - 2] = longestMillis;
+            lengths[sessions - 1] = sessions == 2 ? Math.max(totalMillis - longestMillis, 0) : lastMillis;
+        }
+        long start = epochDay * 86_400_000L;
+        for (long length : lengths) {
+            append(start, start + length, epochDay, FLAG_IMPORTED);
+            start += length;
+        }
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Calls the visitor for every record from the oldest to the newest, including markers.
+     */
+    public synchronized void forEach(RecordVisitor visitor) {
+        forEach(0, count, visitor);
+    }
+
+    /**
+     * Calls the visitor for the records from index {@code from} up to, not including, {@code to}.
+     * Long readers go through the journal in ranges, so appends only wait for one range.
+     */
+    public synchronized void forEach(int from, int to, RecordVisitor visitor) {
+        for (int i = from; i < Math.min(to, count); i++) {
+            int offset = offset(i);
+            visitor.visit(buffer.getLong(offset), buffer.getLong(offset + 8), buffer.getInt(offset + 16),
+                    buffer.getInt(offset + 20));
+        }
+    }
+
+    /**
+     * Replays every record to the visitor and then passes it each record appended later on.
+     */
+    public synchronized void subscribe(RecordVisitor visitor) {
+        forEach(visitor);
+        subscribers.add(visitor);
+    }
+
+    static boolean isSession(int flags) {
+        return (flags & (FLAG_CLEAR_DAY | FLAG_CLEAR_ALL)) == 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    public interface RecordVisitor {
+        void visit(long startMillis, long endMillis, int epochDay, int flags);
+    }
+}
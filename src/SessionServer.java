@@ -0,0 +1,264 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Headless mode, serves a {@link SessionTracker} for many users over HTTP:
+ * <pre>
+ * POST /users/{id}/start         starts a session, 409 if one is running
+ * POST /users/{id}/stop          stops it and returns its length, 409 if none is running
+ * POST /users/{id}/clear-day     clears today's results
+ * POST /users/{id}/clear-all     clears all results
+ * GET  /users/{id}/stats         today's and this week's figures
+ * GET  /users/{id}/range?from=2021-03-01&amp;to=2021-03-31
+ *                                total, longest session and weekday averages of the range
+ * GET  /users/{id}/analytics     p50, p90 and p99 session length, current and longest streak in days,
+ *                                study time by weekday and hour
+ * GET  /users/{id}/report?from=2020-01-01&amp;to=2021-12-31
+ *                                weekly, monthly and weekday figures and the weekly trend of the range,
+ *                                from the first day with sessions to today if left out
+ * GET  /stats                    counters of the whole server
+ * GET  /metrics                  counters and latencies of {@link SchedulerMetrics}, one "name value" per line
+ * </pre>
+ * Responses are JSON, durations are in milliseconds. There is no authentication, so the server only
+ * listens on the loopback interface unless another address is given with -Dscheduler.server.bind.
+ */
+public class SessionServer {
+    private final SessionTracker tracker;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    // address to listen on, e.g. 0.0.0.0 for every interface
+    private static final String BIND_ADDRESS = System.getProperty("scheduler.server.bind");
+
+    public SessionServer(SessionTracker tracker, InetAddress address, int port, int threads) throws IOException {
+        this.tracker = tracker;
+        this.server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "session-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/users/", this::handleUser);
+        server.createContext("/stats", this::handleStats);
+        server.createContext("/metrics", this::handleMetrics);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private void handleUser(HttpExchange exchange) throws IOException {
+        String[] path = exchange.getRequestURI().getPath().split("/"); // "", "users", id, action
+        if (path.length != 4) {
+            respond(exchange, 404, "{\"error\":\"not found\"}");
+            return;
+        }
+        String user = path[2];
+        String action = path[3];
+        if (!SessionTracker.isValidUserId(user)) {
+            respond(exchange, 400, "{\"error\":\"invalid user id\"}");
+            return;
+        }
+        boolean post = exchange.getRequestMethod().equals("POST");
+        int today = (int) LocalDate.now().toEpochDay();
+        try {
+            if (post && action.equals("start")) {
+                boolean started = tracker.start(user);
+                respond(exchange, started ? 200 : 409, "{\"running\":true}");
+            } else if (post && action.equals("stop")) {
+                long length = tracker.stop(user);
+                respond(exchange, length < 0 ? 409 : 200,
+                        length < 0 ? "{\"running\":false}" : "{\"running\":false,\"sessionMillis\":" + length + "}");
+            } else if (post && action.equals("clear-day")) {
+                tracker.clearDay(user, today);
+                respond(exchange, 200, "{}");
+            } else if (post && action.equals("clear-all")) {
+                tracker.clearAll(user);
+                respond(exchange, 200, "{}");
+            } else if (!post && action.equals("stats")) {
+                SessionTracker.Stats stats = tracker.stats(user, today);
+                respond(exchange, 200, "{\"running\":" + tracker.isRunning(user)
+                        + ",\"sessions\":" + stats.sessions
+                        + ",\"lastMillis\":" + stats.lastMillis
+                        + ",\"longestMillis\":" + stats.longestMillis
+                        + ",\"todayMillis\":" + stats.dayMillis
+                        + ",\"weekMillis\":" + stats.weekMillis + "}");
+            } else if (!post && action.equals("analytics")) {
+                respond(exchange, 200, analytics(user, today));
+            } else if (!post && action.equals("report")) {
+                respond(exchange, 200, report(user, exchange.getRequestURI().getQuery(), today));
+            } else if (!post && action.equals("range")) {
+                respond(exchange, 200, range(user, exchange.getRequestURI().getQuery()));
+            } else {
+                respond(exchange, 404, "{\"error\":\"not found\"}");
+            }
+        } catch (DateTimeParseException e) {
+            respond(exchange, 400, "{\"error\":\"invalid date\"}");
+        } catch (IOException e) {
+            respond(exchange, 500, "{\"error\":\"" + e.getClass().getSimpleName() + "\"}");
+        } catch (RuntimeException e) { // a bug, but the client still gets an answer
+            e.printStackTrace();
+            respond(exchange, 500, "{\"error\":\"" + e.getClass().getSimpleName() + "\"}");
+        }
+    }
+
+    // both days of the range are included, either may be left out
+    private String range(String user, String query) throws IOException {
+        int from = Integer.MIN_VALUE;
+        int to = Integer.MAX_VALUE;
+        for (String parameter : query == null ? new String[0] : query.split("&")) {
+            if (parameter.startsWith("from=")) {
+                from = (int) LocalDate.parse(parameter.substring(5)).toEpochDay();
+            } else if (parameter.startsWith("to=")) {
+                to = (int) LocalDate.parse(parameter.substring(3)).toEpochDay();
+            }
+        }
+        HistoryStore history = tracker.history(user);
+        StringBuilder json = new StringBuilder("{\"totalMillis\":").append(history.total(from, to))
+                .append(",\"longestMillis\":").append(history.longestSession(from, to))
+                .append(",\"sessions\":").append(history.sessions(from, to))
+                .append(",\"weekdayAverageMillis\":{");
+        if (from != Integer.MIN_VALUE && to != Integer.MAX_VALUE) { // averages need a bounded range
+            long[] averages = history.weekdayAverages(from, to);
+            for (DayOfWeek day : DayOfWeek.values()) {
+                json.append(day.ordinal() == 0 ? "" : ",").append('"').append(day).append("\":")
+                        .append(averages[day.ordinal()]);
+            }
+        }
+        return json.append("}}").toString();
+    }
+
+    private String report(String user, String query, int today) throws IOException {
+        int from = Integer.MIN_VALUE;
+        int to = today;
+        for (String parameter : query == null ? new String[0] : query.split("&")) {
+            if (parameter.startsWith("from=")) {
+                from = (int) LocalDate.parse(parameter.substring(5)).toEpochDay();
+            } else if (parameter.startsWith("to=")) {
+                to = (int) LocalDate.parse(parameter.substring(3)).toEpochDay();
+            }
+        }
+        if (from == Integer.MIN_VALUE) {
+            from = tracker.history(user).firstDay(); // after today if there is no history, an empty report
+        }
+        ReportGenerator.Report report = tracker.reports(user).report(from, to, today);
+        StringBuilder json = new StringBuilder("{\"totalMillis\":").append(report.totalMillis())
+                .append(",\"sessions\":").append(report.sessions())
+                .append(",\"longestMillis\":").append(report.longestMillis())
+                .append(",\"weeklyTrendMillis\":").append(Math.round(report.weeklyTrendMillis()))
+                .append(",\"weekdayAverageMillis\":{");
+        long[] averages = report.weekdayAverages();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            json.append(day.ordinal() == 0 ? "" : ",").append('"').append(day).append("\":")
+                    .append(averages[day.ordinal()]);
+        }
+        appendPeriods(json.append("},\"weeks\":"), report.weeks);
+        appendPeriods(json.append(",\"months\":"), report.months);
+        return json.append('}').toString();
+    }
+
+    private static void appendPeriods(StringBuilder json, List<ReportGenerator.Period> periods) {
+        json.append('[');
+        for (int i = 0; i < periods.size(); i++) {
+            ReportGenerator.Period period = periods.get(i);
+            json.append(i == 0 ? "" : ",")
+                    .append("{\"from\":\"").append(LocalDate.ofEpochDay(period.firstDay))
+                    .append("\",\"to\":\"").append(LocalDate.ofEpochDay(period.lastDay))
+                    .append("\",\"days\":").append(period.days)
+                    .append(",\"totalMillis\":").append(period.totalMillis)
+                    .append(",\"sessions\":").append(period.sessions)
+                    .append(",\"longestMillis\":").append(period.longestMillis)
+                    .append(",\"activeDays\":").append(period.activeDays).append('}');
+        }
+        json.append(']');
+    }
+
+    private String analytics(String user, int today) throws IOException {
+        SessionStatistics statistics = tracker.statistics(user);
+        StringBuilder json = new StringBuilder("{\"sessions\":").append(statistics.getSessions())
+                .append(",\"p50Millis\":").append(statistics.percentile(50))
+                .append(",\"p90Millis\":").append(statistics.percentile(90))
+                .append(",\"p99Millis\":").append(statistics.percentile(99))
+                .append(",\"currentStreakDays\":").append(statistics.currentStreak(today))
+                .append(",\"longestStreakDays\":").append(statistics.longestStreak())
+                .append(",\"heatmapMillis\":{");
+        long[][] heatmap = statistics.heatmap();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            json.append(day.ordinal() == 0 ? "" : ",").append('"').append(day).append("\":[");
+            for (int hour = 0; hour < 24; hour++) {
+                json.append(hour == 0 ? "" : ",").append(heatmap[day.ordinal()][hour]);
+            }
+            json.append(']');
+        }
+        return json.append("}}").toString();
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, "{\"users\":" + tracker.getOpenUsers()
+                + ",\"activeSessions\":" + tracker.getActiveSessions()
+                + ",\"completedSessions\":" + tracker.getCompletedSessions()
+                + ",\"trackedMillis\":" + tracker.getTrackedMillis() + "}");
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, "text/plain", SchedulerMetrics.get().toText());
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        respond(exchange, status, "application/json", json);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Runs the server until the process is stopped: {@code --headless [port] [data directory]}. The
+     * default directory must not be the one of the desktop client, whose journal is that of the
+     * {@link SessionTracker#LOCAL_USER} id and must have a single writer.
+     */
+    static void run(String[] args, Path defaultDir) throws IOException {
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        Path dir = args.length > 2 ? Path.of(args[2]) : defaultDir;
+        InetAddress address = BIND_ADDRESS != null ? InetAddress.getByName(BIND_ADDRESS) : InetAddress.getLoopbackAddress();
+        SessionTracker tracker = new SessionTracker(dir);
+        SchedulerMetrics.register(tracker);
+        SessionServer server = new SessionServer(tracker, address, port,
+                Math.min(8, Runtime.getRuntime().availableProcessors() * 2));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            try {
+                tracker.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }));
+        server.start();
+        System.out.println("Scheduler server listening on " + address.getHostAddress() + ":" + port + ", data in "
+                + dir.toAbsolutePath());
+    }
+}
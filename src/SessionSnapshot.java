@@ -0,0 +1,307 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Versioned binary snapshot of the whole history, read through a read-only memory mapping.
+ * <pre>
+ * header    32 bytes  magic "SSNP", version, creation epoch-millis, first epoch-day, days,
+ *                     sessions, CRC32C of everything after the header
+ * rollups   32 bytes per day from the first day: total, longest and last session millis, sessions
+ * sessions  24 bytes per session: start and end epoch-millis, epoch-day, flags
+ * </pre>
+ * Big-endian, sessions in journal order. Only the sessions that survived every "clear" are kept,
+ * so the rollup section answers day queries without reading a single session, and restoring is
+ * a sequential copy of the session section into the journal.
+ */
+public class SessionSnapshot {
+    public static final int MAGIC = 0x53534E50; // "SSNP"
+    public static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int DAY_SIZE = 32;
+    static final int SESSION_SIZE = 24;
+
+    private final MappedByteBuffer buffer;
+    private final int firstDay;
+    private final int days;
+    private final int sessions;
+
+    private SessionSnapshot(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        this.firstDay = buffer.getInt(16);
+        this.days = buffer.getInt(20);
+        this.sessions = buffer.getInt(24);
+    }
+
+    /**
+     * Maps the snapshot and verifies its header and checksum.
+     */
+    public static SessionSnapshot open(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // stays valid after close
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a session snapshot: " + path.getFileName());
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported session snapshot version " + buffer.getInt(4));
+        }
+        int days = buffer.getInt(20);
+        int sessions = buffer.getInt(24);
+        if (days < 0 || sessions < 0
+                || buffer.capacity() != HEADER_SIZE + (long) days * DAY_SIZE + (long) sessions * SESSION_SIZE) {
+            throw new IOException("Truncated session snapshot: " + path.getFileName());
+        }
+        if (buffer.getInt(28) != checksum(buffer)) {
+            throw new IOException("Corrupt session snapshot: " + path.getFileName());
+        }
+        return new SessionSnapshot(buffer);
+    }
+
+    private static int checksum(ByteBuffer snapshot) {
+        CRC32C crc = new CRC32C();
+        crc.update(snapshot.duplicate().position(HEADER_SIZE));
+        return (int) crc.getValue();
+    }
+
+    public long getCreatedMillis() {
+        return buffer.getLong(8);
+    }
+
+    public int getSessions() {
+        return sessions;
+    }
+
+    private int dayOffset(int epochDay) {
+        int i = epochDay - firstDay;
+        return i >= 0 && i < days ? HEADER_SIZE + i * DAY_SIZE : -1;
+    }
+
+    public long dayTotal(int epochDay) {
+        int offset = dayOffset(epochDay);
+        return offset < 0 ? 0 : buffer.getLong(offset);
+    }
+
+    public long longestSession(int epochDay) {
+        int offset = dayOffset(epochDay);
+        return offset < 0 ? 0 : buffer.getLong(offset + 8);
+    }
+
+    public long lastSession(int epochDay) {
+        int offset = dayOffset(epochDay);
+        return offset < 0 ? 0 : buffer.getLong(offset + 16);
+    }
+
+    public int sessions(int epochDay) {
+        int offset = dayOffset(epochDay);
+        return offset < 0 ? 0 : buffer.getInt(offset + 24);
+    }
+
+    /**
+     * Calls the visitor for every session from the oldest to the newest.
+     */
+    public void forEach(SessionJournal.RecordVisitor visitor) {
+        int offset = HEADER_SIZE + days * DAY_SIZE;
+        for (int i = 0; i < sessions; i++, offset += SESSION_SIZE) {
+            visitor.visit(buffer.getLong(offset), buffer.getLong(offset + 8), buffer.getInt(offset + 16),
+                    buffer.getInt(offset + 20));
+        }
+    }
+
+    /**
+     * Replaces the history of the journal with the sessions of the snapshot and returns their number.
+     * The sessions are marked {@link SessionJournal#FLAG_RESTORED}, so a sync does not send them twice.
+     */
+    public int restore(SessionJournal journal) throws IOException {
+        synchronized (journal) {
+            journal.clearAll();
+            IOException[] failure = new IOException[1];
+            forEach((startMillis, endMillis, epochDay, flags) -> {
+                if (failure[0] == null) {
+                    try {
+                        journal.append(startMillis, endMillis, epochDay, flags | SessionJournal.FLAG_RESTORED);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * Writes a snapshot of the journal and returns the number of sessions in it. The target is
+     * only replaced once the snapshot is complete.
+     */
+    public static int write(SessionJournal journal, Path target) throws IOException {
+        HistoryExporter.Clears clears = new HistoryExporter.Clears();
+        Survivors survivors = new Survivors(clears);
+        synchronized (journal) { // the same records for every pass
+            journal.forEach(clears);
+            journal.forEach(survivors);
+            survivors.index = 0;
+            survivors.allocate();
+            journal.forEach(survivors);
+        }
+        ByteBuffer snapshot = survivors.snapshot;
+        snapshot.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, System.currentTimeMillis())
+                .putInt(16, survivors.firstDay).putInt(20, survivors.days).putInt(24, survivors.count)
+                .putInt(28, checksum(snapshot));
+
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            snapshot.rewind();
+            while (snapshot.hasRemaining()) {
+                channel.write(snapshot);
+            }
+            channel.force(false);
+        }
+        Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        return survivors.count;
+    }
+
+    // counts the surviving sessions and their days on the first pass, encodes them on the second
+    private static class Survivors implements SessionJournal.RecordVisitor {
+        private final HistoryExporter.Clears clears;
+        private int index;
+        private int count;
+        private int firstDay = Integer.MAX_VALUE;
+        private int lastDay = Integer.MIN_VALUE;
+        private int days;
+        private ByteBuffer snapshot;
+        private int sessionOffset;
+
+        Survivors(HistoryExporter.Clears clears) {
+            this.clears = clears;
+        }
+
+        void allocate() throws IOException {
+            days = count == 0 ? 0 : lastDay - firstDay + 1;
+            long size = HEADER_SIZE + (long) days * DAY_SIZE + (long) count * SESSION_SIZE;
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("History too large for a snapshot");
+            }
+            snapshot = ByteBuffer.allocate((int) size);
+            sessionOffset = HEADER_SIZE + days * DAY_SIZE;
+            count = 0;
+        }
+
+        @Override
+        public void visit(long startMillis, long endMillis, int epochDay, int flags) {
+            int i = index++;
+            if (!SessionJournal.isSession(flags) || clears.isCleared(i, epochDay)) {
+                return;
+            }
+            if (snapshot == null) {
+                firstDay = Math.min(firstDay, epochDay);
+                lastDay = Math.max(lastDay, epochDay);
+                count++;
+                return;
+            }
+            long length = endMillis - startMillis;
+            int day = HEADER_SIZE + (epochDay - firstDay) * DAY_SIZE;
+            snapshot.putLong(day, snapshot.getLong(day) + length);
+            snapshot.putLong(day + 8, Math.max(snapshot.getLong(day + 8), length));
+            snapshot.putLong(day + 16, length);
+            snapshot.putInt(day + 24, snapshot.getInt(day + 24) + 1);
+            int offset = sessionOffset + count++ * SESSION_SIZE;
+            snapshot.putLong(offset, startMillis).putLong(offset + 8, endMillis).putInt(offset + 16, epochDay)
+                    .putInt(offset + 20, flags);
+        }
+    }
+
+    /**
+     * Converts a text export, or every export in a directory, into a snapshot and returns the
+     * number of days converted. Exports are named after their day, e.g. 2021-04-12.txt, and hold
+     * the sessions, last session, longest session and total of the day on their first lines.
+     */
+    public static int convert(Path source, Path target) throws IOException {
+        List<Path> exports = new ArrayList<>();
+        if (Files.isDirectory(source)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(source, "*.txt")) {
+                stream.forEach(exports::add);
+            }
+        } else {
+            exports.add(source);
+        }
+        Path dir = Files.createTempDirectory("snapshot");
+        Path journalPath = dir.resolve("convert.journal");
+        int converted = 0;
+        try {
+            try (SessionJournal journal = SessionJournal.open(journalPath)) {
+                for (Path export : exports) {
+                    if (importExport(journal, export)) {
+                        converted++;
+                    }
+                }
+                write(journal, target);
+            }
+        } finally {
+            Files.deleteIfExists(journalPath);
+            Files.deleteIfExists(dir);
+        }
+        return converted;
+    }
+
+    // false if the file is not named after a day
+    private static boolean importExport(SessionJournal journal, Path export) {
+        LocalDate date;
+        try {
+            date = LocalDate.parse(export.getFileName().toString().replace(".txt", ""));
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+        try {
+            readExport(journal, export, date);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Replaces the day with the figures of a text export, which holds the sessions, last session,
+     * longest session and total of the day on its first lines. The weekly total after them is not
+     * imported, it follows from the imported days.
+     */
+    static void readExport(SessionJournal journal, Path export, LocalDate date) throws IOException {
+        List<String> values = new ArrayList<>(4);
+        try (BufferedReader reader = Files.newBufferedReader(export, Charset.defaultCharset())) {
+            for (String line = reader.readLine(); line != null && values.size() < 4; line = reader.readLine()) {
+                values.add(line.substring(line.indexOf(':') + 1).trim()); // the labels depend on the language
+            }
+        }
+        int sessions;
+        long last;
+        long longest;
+        long total;
+        try {
+            sessions = Integer.parseInt(values.get(0));
+            last = Duration.parse(values.get(1)).toMillis();
+            longest = Duration.parse(values.get(2)).toMillis();
+            total = Duration.parse(values.get(3)).toMillis();
+        } catch (IndexOutOfBoundsException | NumberFormatException | DateTimeParseException e) {
+            throw new IOException("Not an export of this application");
+        }
+        journal.importDay((int) date.toEpochDay(), sessions, last, longest, total);
+    }
+}
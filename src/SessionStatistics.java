@@ -0,0 +1,193 @@
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Streaming statistics of the session journal, updated as each record arrives so that no query
+ * looks at the history again:
+ * <ul>
+ * <li>a histogram of session lengths in the buckets of {@link LatencyHistogram}, for percentiles
+ * at most 12.5% above the true length</li>
+ * <li>the runs of consecutive days with sessions, for the current and the longest streak</li>
+ * <li>study time by weekday and hour of the day the time was spent in</li>
+ * </ul>
+ * Clearing a day takes its sessions out of every statistic again; the start and length of every
+ * session are kept per day for that. Imported sessions only carry their length, so they count for
+ * lengths and streaks but not for the time of day.
+ * Feed it with {@link SessionJournal#subscribe(SessionJournal.RecordVisitor)}.
+ */
+public class SessionStatistics implements SessionJournal.RecordVisitor {
+    private final ZoneId zone;
+    private final long[] lengths = new long[LatencyHistogram.BUCKETS]; // sessions per length bucket
+    private int count;
+    private final Map<Integer, long[]> days = new HashMap<>(); // per day: sessions, then start and length of each
+    private final TreeMap<Integer, Integer> runs = new TreeMap<>(); // first day of each streak -> last day
+    private final TreeMap<Integer, Integer> runLengths = new TreeMap<>(); // streak length -> number of such streaks
+    private final long[][] heatmap = new long[7][24]; // millis by weekday (Monday first) and hour
+
+    public SessionStatistics(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    @Override
+    public synchronized void visit(long startMillis, long endMillis, int epochDay, int flags) {
+        if (flags == SessionJournal.FLAG_CLEAR_ALL) {
+            Arrays.fill(lengths, 0);
+            count = 0;
+            days.clear();
+            runs.clear();
+            runLengths.clear();
+            for (long[] weekday : heatmap) {
+                Arrays.fill(weekday, 0);
+            }
+        } else if (flags == SessionJournal.FLAG_CLEAR_DAY) {
+            clearDay(epochDay);
+        } else if (SessionJournal.isSession(flags)) {
+            boolean timed = (flags & SessionJournal.FLAG_IMPORTED) == 0;
+            addSession(epochDay, timed ? startMillis : -1, Math.max(0, endMillis - startMillis));
+        }
+    }
+
+    private void addSession(int epochDay, long startMillis, long length) {
+        long[] day = days.get(epochDay);
+        if (day == null) {
+            day = new long[1 + 2 * 4];
+            days.put(epochDay, day);
+            addDay(epochDay);
+        } else if (1 + 2 * (day[0] + 1) > day.length) {
+            day = Arrays.copyOf(day, day.length * 2);
+            days.put(epochDay, day);
+        }
+        int i = 1 + 2 * (int) day[0]++;
+        day[i] = startMillis;
+        day[i + 1] = length;
+        lengths[LatencyHistogram.bucket(length)]++;
+        count++;
+        if (startMillis >= 0) {
+            addToHeatmap(startMillis, length, 1);
+        }
+    }
+
+    private void clearDay(int epochDay) {
+        long[] day = days.remove(epochDay);
+        if (day == null) {
+            return;
+        }
+        for (int i = 1; i < 1 + 2 * day[0]; i += 2) {
+            lengths[LatencyHistogram.bucket(day[i + 1])]--;
+            count--;
+            if (day[i] >= 0) {
+                addToHeatmap(day[i], day[i + 1], -1);
+            }
+        }
+        removeDay(epochDay);
+    }
+
+    // spreads the session over the hours it ran in, sign -1 takes it out again
+    private void addToHeatmap(long startMillis, long length, int sign) {
+        long at = startMillis;
+        long end = startMillis + length;
+        while (at < end) {
+            ZonedDateTime time = Instant.ofEpochMilli(at).atZone(zone);
+            long hourEnd = time.withMinute(0).withSecond(0).withNano(0).plusHours(1).toInstant().toEpochMilli();
+            long spent = Math.min(end, hourEnd) - at;
+            heatmap[time.getDayOfWeek().ordinal()][time.getHour()] += sign * spent;
+            at += spent;
+        }
+    }
+
+    // the day joins the streaks ending just before or starting just after it
+    private void addDay(int epochDay) {
+        Map.Entry<Integer, Integer> before = runs.floorEntry(epochDay - 1);
+        Integer afterEnd = runs.get(epochDay + 1);
+        int first = epochDay;
+        int last = epochDay;
+        if (before != null && before.getValue() == epochDay - 1) {
+            first = before.getKey();
+            removeRun(first, before.getValue());
+        }
+        if (afterEnd != null) {
+            last = afterEnd;
+            removeRun(epochDay + 1, afterEnd);
+        }
+        addRun(first, last);
+    }
+
+    // the streak containing the day splits around it
+    private void removeDay(int epochDay) {
+        Map.Entry<Integer, Integer> run = runs.floorEntry(epochDay);
+        if (run == null || run.getValue() < epochDay) {
+            return;
+        }
+        removeRun(run.getKey(), run.getValue());
+        if (run.getKey() < epochDay) {
+            addRun(run.getKey(), epochDay - 1);
+        }
+        if (run.getValue() > epochDay) {
+            addRun(epochDay + 1, run.getValue());
+        }
+    }
+
+    private void addRun(int first, int last) {
+        runs.put(first, last);
+        runLengths.merge(last - first + 1, 1, Integer::sum);
+    }
+
+    private void removeRun(int first, int last) {
+        runs.remove(first);
+        runLengths.computeIfPresent(last - first + 1, (length, n) -> n == 1 ? null : n - 1);
+    }
+
+    public synchronized int getSessions() {
+        return count;
+    }
+
+    /**
+     * The session length in milliseconds that {@code percentile} percent of the sessions do not exceed.
+     */
+    public synchronized long percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < lengths.length; i++) {
+            seen += lengths[i];
+            if (seen >= rank) {
+                return LatencyHistogram.upperBound(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Consecutive days with sessions up to the given day, or up to the day before if the given
+     * day has none yet.
+     */
+    public synchronized int currentStreak(int epochDay) {
+        Map.Entry<Integer, Integer> run = runs.floorEntry(epochDay);
+        if (run == null || run.getValue() < epochDay - 1) {
+            return 0;
+        }
+        return Math.min(run.getValue(), epochDay) - run.getKey() + 1;
+    }
+
+    public synchronized int longestStreak() {
+        return runLengths.isEmpty() ? 0 : runLengths.lastKey();
+    }
+
+    /**
+     * Study time in milliseconds by weekday, Monday first, and hour of the day.
+     */
+    public synchronized long[][] heatmap() {
+        long[][] copy = new long[7][];
+        for (int i = 0; i < 7; i++) {
+            copy[i] = heatmap[i].clone();
+        }
+        return copy;
+    }
+}
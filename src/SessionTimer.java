@@ -0,0 +1,82 @@
+import jdk.jfr.EventType;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the running session with the monotonic clock. Elapsed time is always computed from
+ * {@link System#nanoTime()} instead of counting ticks, so late ticks (GC pauses, a busy scheduler)
+ * never make it drift. Ticks are aligned to whole seconds of the session and coalesced: while an
+ * update is still waiting on the UI executor, newer ticks only replace its value.
+ */
+public class SessionTimer {
+    private static final long NO_UPDATE = -1;
+    // no event is allocated while no recording has the tick event enabled
+    private static final EventType TIMER_TICK = EventType.getEventType(SchedulerEvents.TimerTick.class);
+
+    private final ScheduledExecutorService scheduler;
+    private final Executor uiExecutor;
+    private final AtomicLong pendingSeconds = new AtomicLong(NO_UPDATE);
+    private ScheduledFuture<?> ticks;
+    private long startNanos;
+
+    public SessionTimer(ScheduledExecutorService scheduler, Executor uiExecutor) {
+        this.scheduler = scheduler;
+        this.uiExecutor = uiExecutor;
+    }
+
+    /**
+     * Starts measuring, the listener receives the elapsed whole seconds on the UI executor.
+     */
+    public synchronized void start(TickListener listener) {
+        stop();
+        startNanos = System.nanoTime();
+        Runnable publish = () -> { // created once per session, not once per tick
+            long latest = pendingSeconds.getAndSet(NO_UPDATE);
+            if (latest != NO_UPDATE && isRunning()) { // a tick racing with stop() is dropped
+                listener.tick(latest);
+                // lag from the second being reached to it being shown, scheduler and UI queue included
+                long lag = System.nanoTime() - startNanos - TimeUnit.SECONDS.toNanos(latest);
+                SchedulerMetrics.get().tickLag.record(lag);
+                if (TIMER_TICK.isEnabled()) {
+                    SchedulerEvents.TimerTick event = new SchedulerEvents.TimerTick();
+                    if (event.shouldCommit()) {
+                        event.elapsedSeconds = latest;
+                        event.lagNanos = lag;
+                        event.commit();
+                    }
+                }
+            }
+        };
+        ticks = scheduler.scheduleAtFixedRate(() -> {
+            long seconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos);
+            if (pendingSeconds.getAndSet(seconds) == NO_UPDATE) {
+                uiExecutor.execute(publish);
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops measuring and returns the elapsed time in nanoseconds, 0 if the timer was not running.
+     */
+    public synchronized long stop() {
+        if (ticks == null) {
+            return 0;
+        }
+        ticks.cancel(false);
+        ticks = null;
+        pendingSeconds.set(NO_UPDATE);
+        return System.nanoTime() - startNanos;
+    }
+
+    public synchronized boolean isRunning() {
+        return ticks != null;
+    }
+
+    public interface TickListener {
+        void tick(long elapsedSeconds);
+    }
+}
@@ -0,0 +1,234 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Session and aggregation logic without any UI. Every user has a journal of their own in the data
+ * directory, with a rollup index and a history store fed by it; users are opened on first use and
+ * never contend with each other. Starting and stopping a session is a compare-and-set on the
+ * user's running session, so a session can only be started or stopped once even when requests race.
+ */
+public class SessionTracker implements Closeable {
+    /** The desktop client, its journal is the one written by earlier versions. */
+    public static final String LOCAL_USER = "sessions";
+    private static final Pattern USER_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}"); // user ids become file names
+
+    private final Path dir;
+    private final Clock clock; // dates the sessions, their length comes from System.nanoTime()
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final LongAdder completedSessions = new LongAdder();
+    private final LongAdder trackedMillis = new LongAdder();
+
+    public SessionTracker(Path dir) {
+        this(dir, Clock.systemDefaultZone());
+    }
+
+    public SessionTracker(Path dir, Clock clock) {
+        this.dir = dir;
+        this.clock = clock;
+    }
+
+    public static boolean isValidUserId(String userId) {
+        return USER_ID.matcher(userId).matches();
+    }
+
+    private User user(String userId) throws IOException {
+        if (!isValidUserId(userId)) {
+            throw new IllegalArgumentException("Invalid user id: " + userId);
+        }
+        User user = users.get(userId);
+        if (user == null) {
+            synchronized (users) { // opening a journal twice would map the same file twice
+                user = users.get(userId);
+                if (user == null) {
+                    user = new User(SessionJournal.open(dir.resolve(userId + ".journal")));
+                    users.put(userId, user);
+                }
+            }
+        }
+        return user;
+    }
+
+    /**
+     * Starts a session, returns false if the user already has one running.
+     */
+    public boolean start(String userId) throws IOException {
+        Running session = new Running(System.nanoTime(), clock.millis(), (int) LocalDate.now(clock).toEpochDay());
+        if (!user(userId).running.compareAndSet(null, session)) {
+            return false;
+        }
+        activeSessions.incrementAndGet();
+        new SchedulerEvents.SessionStart(userId).commit();
+        return true;
+    }
+
+    /**
+     * Stops the running session and journals it under the day it started. The length comes from
+     * the monotonic clock. Returns the length in milliseconds, or -1 if no session was running.
+     */
+    public long stop(String userId) throws IOException {
+        User user = user(userId);
+        Running session = user.running.getAndSet(null);
+        if (session == null) {
+            return -1;
+        }
+        long stopNanos = System.nanoTime();
+        long length = TimeUnit.NANOSECONDS.toMillis(stopNanos - session.startNanos);
+        activeSessions.decrementAndGet();
+        SchedulerEvents.SessionStop event = new SchedulerEvents.SessionStop(userId);
+        event.begin();
+        user.journal.appendSession(session.startMillis, session.startMillis + length, session.epochDay);
+        event.lengthMillis = length;
+        event.commit();
+        SchedulerMetrics.get().journalAppends.record(System.nanoTime() - stopNanos);
+        completedSessions.increment();
+        trackedMillis.add(length);
+        return length;
+    }
+
+    public boolean isRunning(String userId) throws IOException {
+        return user(userId).running.get() != null;
+    }
+
+    public void clearDay(String userId, int epochDay) throws IOException {
+        user(userId).journal.clearDay(epochDay);
+    }
+
+    public void clearAll(String userId) throws IOException {
+        user(userId).journal.clearAll();
+    }
+
+    public Stats stats(String userId, int epochDay) throws IOException {
+        RollupIndex rollups = user(userId).rollups;
+        return new Stats(rollups.sessions(epochDay), rollups.lastSession(epochDay), rollups.longestSession(epochDay),
+                rollups.dayTotal(epochDay), rollups.weekTotal(epochDay));
+    }
+
+    public SessionJournal journal(String userId) throws IOException {
+        return user(userId).journal;
+    }
+
+    public RollupIndex rollups(String userId) throws IOException {
+        return user(userId).rollups;
+    }
+
+    public HistoryStore history(String userId) throws IOException {
+        return user(userId).history;
+    }
+
+    /**
+     * Sessions of every open user on the day.
+     */
+    public int sessionsOn(int epochDay) {
+        int sessions = 0;
+        for (User user : users.values()) {
+            sessions += user.rollups.sessions(epochDay);
+        }
+        return sessions;
+    }
+
+    public SessionStatistics statistics(String userId) throws IOException {
+        return user(userId).statistics;
+    }
+
+    public ReportGenerator reports(String userId) throws IOException {
+        return user(userId).reports;
+    }
+
+    public int getOpenUsers() {
+        return users.size();
+    }
+
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    // sessions completed since the tracker was created
+    public long getCompletedSessions() {
+        return completedSessions.sum();
+    }
+
+    public long getTrackedMillis() {
+        return trackedMillis.sum();
+    }
+
+    /**
+     * Closes every journal, sessions still running are not recorded.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        synchronized (users) {
+            for (User user : users.values()) {
+                try {
+                    user.journal.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            users.clear();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static class User {
+        private final SessionJournal journal;
+        private final RollupIndex rollups = new RollupIndex();
+        private final HistoryStore history = new HistoryStore();
+        private final SessionStatistics statistics = new SessionStatistics(ZoneId.systemDefault());
+        private final ReportGenerator reports = new ReportGenerator(rollups, ForkJoinPool.commonPool());
+        private final AtomicReference<Running> running = new AtomicReference<>();
+
+        User(SessionJournal journal) {
+            this.journal = journal;
+            journal.subscribe(rollups);
+            journal.subscribe(history);
+            journal.subscribe(statistics);
+            journal.subscribe(reports); // after the rollups it reads
+            history.compact(); // months reopened while replaying the journal
+        }
+    }
+
+    // a session in progress, filed under the local day it started on
+    private static class Running {
+        private final long startNanos;
+        private final long startMillis;
+        private final int epochDay;
+
+        Running(long startNanos, long startMillis, int epochDay) {
+            this.startNanos = startNanos;
+            this.startMillis = startMillis;
+            this.epochDay = epochDay;
+        }
+    }
+
+    public static class Stats {
+        public final int sessions;
+        public final long lastMillis;
+        public final long longestMillis;
+        public final long dayMillis;
+        public final long weekMillis;
+
+        Stats(int sessions, long lastMillis, long longestMillis, long dayMillis, long weekMillis) {
+            this.sessions = sessions;
+            this.lastMillis = lastMillis;
+            this.longestMillis = longestMillis;
+            this.dayMillis = dayMillis;
+            this.weekMillis = weekMillis;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * One phase of the start of the application, recorded by Flight Recorder when it is running, e.g.
+ * {@code java -XX:StartFlightRecording=filename=startup.jfr -jar scheduler.jar}. The duration of
+ * the event is the duration of the phase; phases ending with a frame end once the scene was drawn.
+ */
+@Name("scheduler.Startup")
+@Label("Startup Phase")
+@Category("Scheduler")
+@Description("A phase of the start of the application")
+@StackTrace(false)
+public class StartupEvent extends Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Uptime")
+    @Description("Milliseconds since the JVM was started when the phase ended")
+    long uptimeMillis;
+
+    private StartupEvent(String phase) {
+        this.phase = phase;
+    }
+
+    /**
+     * Starts timing a phase.
+     */
+    public static StartupEvent begin(String phase) {
+        StartupEvent event = new StartupEvent(phase);
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the phase and commits it.
+     */
+    public void done() {
+        end();
+        if (shouldCommit()) {
+            uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,266 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Planned study blocks, Pomodoro cycles and reminders. Every plan has exactly one timeout in the
+ * timing wheel, its next event; when the event fires the listener is told and the following event
+ * is scheduled. Plans are kept in a text file and scheduled again on startup.
+ */
+public class StudyPlanner {
+    private static final long SAVE_DELAY_MILLIS = 1000; // plans added in bulk are written once
+
+    public enum Kind { REMINDER, STUDY_BLOCK, POMODORO }
+
+    public enum Event { REMINDER, BLOCK_START, BLOCK_END, WORK_START, BREAK_START, FINISHED }
+
+    private final Path file;
+    private final TimingWheel wheel;
+    private final ScheduledExecutorService scheduler;
+    private final Executor ioExecutor;
+    private final PlanListener listener;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Map<Long, Plan> plans = new ConcurrentHashMap<>();
+    private final Map<Long, TimingWheel.Timeout> timeouts = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private boolean saveScheduled;
+    private final Object saveLock = new Object(); // saves on the I/O executor may overlap, one writes at a time
+
+    // the scheduler only delays the saves, the file is written on the I/O executor
+    public StudyPlanner(Path file, TimingWheel wheel, ScheduledExecutorService scheduler, Executor ioExecutor,
+                        PlanListener listener) {
+        this.file = file;
+        this.wheel = wheel;
+        this.scheduler = scheduler;
+        this.ioExecutor = ioExecutor;
+        this.listener = listener;
+    }
+
+    /**
+     * Reads the saved plans and schedules their next events. Missed occurrences of recurring
+     * plans are skipped, a one-time reminder that was missed fires right away. Lines that cannot
+     * be read are skipped and dropped by the next save.
+     */
+    public void load() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!line.isEmpty()) {
+                    Plan plan;
+                    try {
+                        plan = Plan.parse(line);
+                    } catch (RuntimeException e) { // a damaged line costs that plan, not the start of the app
+                        System.err.println("Skipping unreadable plan: " + line + " (" + e + ")");
+                        continue;
+                    }
+                    nextId.accumulateAndGet(plan.id + 1, Math::max);
+                    plans.put(plan.id, plan);
+                    scheduleNext(plan, plan.kind == Kind.REMINDER && plan.repeatDays == 0 ? Long.MIN_VALUE
+                            : System.currentTimeMillis());
+                }
+            }
+        }
+    }
+
+    public Plan addReminder(long atMillis, int repeatDays, String title) {
+        return add(new Plan(nextId.getAndIncrement(), Kind.REMINDER, atMillis, repeatDays, 0, 0, 0, title));
+    }
+
+    // weekly block starting at the given time, repeated every seven days
+    public Plan addStudyBlock(long firstStartMillis, long lengthMillis, String title) {
+        return add(new Plan(nextId.getAndIncrement(), Kind.STUDY_BLOCK, firstStartMillis, 7, lengthMillis, 0, 0, title));
+    }
+
+    public Plan addPomodoro(long startMillis, long workMillis, long breakMillis, int cycles, String title) {
+        return add(new Plan(nextId.getAndIncrement(), Kind.POMODORO, startMillis, 0, workMillis, breakMillis, cycles, title));
+    }
+
+    private Plan add(Plan plan) {
+        plans.put(plan.id, plan);
+        scheduleNext(plan, System.currentTimeMillis());
+        saveLater();
+        return plan;
+    }
+
+    public boolean cancel(long planId) {
+        Plan plan = plans.remove(planId);
+        TimingWheel.Timeout timeout = timeouts.remove(planId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        if (plan != null) {
+            saveLater();
+        }
+        return plan != null;
+    }
+
+    public List<Plan> getPlans() {
+        return new ArrayList<>(plans.values());
+    }
+
+    // time of the next event of the plan, or Long.MAX_VALUE if it has none
+    public long nextEventMillis(long planId) {
+        TimingWheel.Timeout timeout = timeouts.get(planId);
+        return timeout == null ? Long.MAX_VALUE : timeout.getDeadlineMillis();
+    }
+
+    private void scheduleNext(Plan plan, long afterMillis) {
+        long[] next = nextEvent(plan, afterMillis);
+        if (next == null) { // nothing left to fire
+            plans.remove(plan.id);
+            timeouts.remove(plan.id);
+            saveLater();
+            return;
+        }
+        long at = next[0];
+        Event event = Event.values()[(int) next[1]];
+        timeouts.put(plan.id, wheel.schedule(at, () -> {
+            if (plans.get(plan.id) != plan) { // cancelled while firing
+                return;
+            }
+            listener.onEvent(plan, event, at);
+            scheduleNext(plan, at + 1);
+        }));
+    }
+
+    // returns {time, event ordinal} of the first event at or after the given time
+    private long[] nextEvent(Plan plan, long afterMillis) {
+        switch (plan.kind) {
+            case REMINDER: {
+                long at = occurrence(plan, afterMillis);
+                return at < 0 ? null : new long[]{at, Event.REMINDER.ordinal()};
+            }
+            case STUDY_BLOCK: {
+                // the end of an earlier block may still be ahead
+                long start = occurrence(plan, afterMillis - plan.workMillis);
+                if (start < 0) {
+                    return null;
+                }
+                return start >= afterMillis ? new long[]{start, Event.BLOCK_START.ordinal()}
+                        : new long[]{start + plan.workMillis, Event.BLOCK_END.ordinal()};
+            }
+            default: {
+                long round = plan.workMillis + plan.breakMillis;
+                long finish = plan.firstMillis + plan.cycles * round - plan.breakMillis;
+                if (afterMillis > finish) {
+                    return null;
+                }
+                long sinceStart = Math.max(afterMillis - plan.firstMillis, 0);
+                long workStart = plan.firstMillis + (sinceStart + round - 1) / round * round;
+                long breakStart = plan.firstMillis + sinceStart / round * round + plan.workMillis;
+                if (breakStart >= afterMillis && breakStart < finish && breakStart < workStart) {
+                    return new long[]{breakStart, Event.BREAK_START.ordinal()};
+                }
+                return workStart < finish ? new long[]{workStart, Event.WORK_START.ordinal()}
+                        : new long[]{finish, Event.FINISHED.ordinal()};
+            }
+        }
+    }
+
+    // first occurrence at or after the given time, -1 if a one-time plan has passed
+    private long occurrence(Plan plan, long afterMillis) {
+        if (plan.firstMillis >= afterMillis) {
+            return plan.firstMillis;
+        }
+        if (plan.repeatDays == 0) {
+            return -1;
+        }
+        // calendar arithmetic keeps the local time of day across daylight saving changes
+        ZonedDateTime first = Instant.ofEpochMilli(plan.firstMillis).atZone(zone);
+        long periods = (afterMillis - plan.firstMillis) / TimeUnit.DAYS.toMillis(plan.repeatDays);
+        ZonedDateTime at = first.plusDays(periods * plan.repeatDays);
+        while (at.toInstant().toEpochMilli() < afterMillis) {
+            at = at.plusDays(plan.repeatDays);
+        }
+        return at.toInstant().toEpochMilli();
+    }
+
+    private synchronized void saveLater() {
+        if (!saveScheduled) {
+            saveScheduled = true;
+            scheduler.schedule(() -> ioExecutor.execute(() -> {
+                try {
+                    save();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }), SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes all plans, replacing the file only once the new content is complete.
+     */
+    public void save() throws IOException {
+        synchronized (this) {
+            saveScheduled = false;
+        }
+        synchronized (saveLock) {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Plan plan : plans.values()) {
+                    writer.write(plan.format());
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    public interface PlanListener {
+        void onEvent(Plan plan, Event event, long atMillis);
+    }
+
+    public static class Plan {
+        public final long id;
+        public final Kind kind;
+        public final long firstMillis;
+        public final int repeatDays; // 0 for one-time plans
+        public final long workMillis; // block length for study blocks
+        public final long breakMillis;
+        public final int cycles;
+        public final String title;
+
+        Plan(long id, Kind kind, long firstMillis, int repeatDays, long workMillis, long breakMillis, int cycles, String title) {
+            this.id = id;
+            this.kind = kind;
+            this.firstMillis = firstMillis;
+            this.repeatDays = repeatDays;
+            this.workMillis = workMillis;
+            this.breakMillis = breakMillis;
+            this.cycles = cycles;
+            this.title = title;
+        }
+
+        String format() {
+            return id + ";" + kind + ";" + firstMillis + ";" + repeatDays + ";" + workMillis + ";" + breakMillis + ";"
+                    + cycles + ";" + title.replace('\n', ' ');
+        }
+
+        static Plan parse(String line) {
+            String[] f = line.split(";", 8);
+            return new Plan(Long.parseLong(f[0]), Kind.valueOf(f[1]), Long.parseLong(f[2]), Integer.parseInt(f[3]),
+                    Long.parseLong(f[4]), Long.parseLong(f[5]), Integer.parseInt(f[6]), f[7]);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Device logs of {@link DeviceSync} as files in a shared directory, e.g. one kept in step by a file
+ * sync tool or on a network drive: {@code <device>.slog}, magic "SLOG" and version, then 24 bytes
+ * per session (start and end epoch-millis, epoch-day, reserved). Each file has a single writer, so
+ * readers only have to ignore a record the writer, or the tool copying the file, has not finished.
+ */
+public class SyncDirectory implements DeviceSync.Transport {
+    private static final int MAGIC = 0x534C4F47; // "SLOG"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 24;
+    private static final String SUFFIX = ".slog";
+
+    private final Path dir;
+
+    public SyncDirectory(Path dir) {
+        this.dir = dir;
+    }
+
+    @Override
+    public List<String> devices() throws IOException {
+        List<String> devices = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path log : stream) {
+                String name = log.getFileName().toString();
+                devices.add(name.substring(0, name.length() - SUFFIX.length()));
+            }
+        }
+        return devices;
+    }
+
+    @Override
+    public long size(String device) throws IOException {
+        try {
+            return records(Files.size(log(device)));
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    private static long records(long bytes) {
+        return Math.max(0, (bytes - HEADER_SIZE) / RECORD_SIZE); // a torn record is not there yet
+    }
+
+    @Override
+    public long[] read(String device, long from) throws IOException {
+        try (FileChannel channel = FileChannel.open(log(device), StandardOpenOption.READ)) {
+            checkHeader(channel, device);
+            long count = records(channel.size()) - from;
+            if (count <= 0) {
+                return new long[0];
+            }
+            if (count * RECORD_SIZE > Integer.MAX_VALUE) {
+                count = Integer.MAX_VALUE / RECORD_SIZE; // the rest comes with the next sync
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) count * RECORD_SIZE);
+            long position = HEADER_SIZE + from * RECORD_SIZE;
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Sync log shrank while read: " + device);
+                }
+            }
+            long[] sessions = new long[(int) count * FIELDS];
+            for (int i = 0, offset = 0; i < sessions.length; i += FIELDS, offset += RECORD_SIZE) {
+                sessions[i] = buffer.getLong(offset);
+                sessions[i + 1] = buffer.getLong(offset + 8);
+                sessions[i + 2] = buffer.getInt(offset + 16);
+            }
+            return sessions;
+        } catch (NoSuchFileException e) {
+            return new long[0];
+        }
+    }
+
+    @Override
+    public void append(String device, long[] sessions) throws IOException {
+        Files.createDirectories(dir);
+        try (FileChannel channel = FileChannel.open(log(device), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            if (channel.size() < HEADER_SIZE) {
+                channel.write(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip(), 0);
+            }
+            checkHeader(channel, device);
+            long position = HEADER_SIZE + records(channel.size()) * RECORD_SIZE; // over a torn record, if any
+            ByteBuffer buffer = ByteBuffer.allocate(sessions.length / FIELDS * RECORD_SIZE);
+            for (int i = 0; i < sessions.length; i += FIELDS) {
+                buffer.putLong(sessions[i]).putLong(sessions[i + 1]).putInt((int) sessions[i + 2]).putInt(0);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(false);
+        }
+    }
+
+    private static void checkHeader(FileChannel channel, String device) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (channel.read(header, 0) < HEADER_SIZE) { // a fresh log being copied may not have its header yet
+            return;
+        }
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Not a sync log of a supported version: " + device);
+        }
+    }
+
+    private Path log(String device) {
+        return dir.resolve(device + SUFFIX);
+    }
+}
@@ -0,0 +1,188 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hierarchical timing wheel. Four levels of 64 slots cover 64^4 ticks; a timeout is put into the
+ * slot of the coarsest level it fits and moved down a level whenever the wheel below wraps around.
+ * Scheduling and cancelling only link or unlink a list node, and the whole wheel is driven by a
+ * single periodic task, however many timeouts are pending.
+ */
+public class TimingWheel {
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+
+    private final long tickMillis;
+    private final Bucket[][] wheels = new Bucket[LEVELS][WHEEL_SIZE];
+    private final Bucket overflow = new Bucket(); // deadlines beyond the last level, placed again on each full turn
+    private long currentTick;
+    private int pending;
+    private ScheduledFuture<?> driver;
+
+    public TimingWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+        for (Bucket[] wheel : wheels) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                wheel[i] = new Bucket();
+            }
+        }
+    }
+
+    /**
+     * Runs the task on the first tick at or after the deadline. Deadlines in the past fire on the
+     * next tick.
+     */
+    public synchronized Timeout schedule(long deadlineMillis, Runnable task) {
+        Timeout timeout = new Timeout(Math.max(deadlineMillis / tickMillis, currentTick + 1), task);
+        place(timeout);
+        pending++;
+        return timeout;
+    }
+
+    private void place(Timeout timeout) {
+        long delta = timeout.deadlineTick - currentTick;
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < 1L << (WHEEL_BITS * (level + 1))) {
+                wheels[level][(int) (timeout.deadlineTick >>> (WHEEL_BITS * level)) & WHEEL_MASK].add(timeout);
+                return;
+            }
+        }
+        overflow.add(timeout);
+    }
+
+    /**
+     * Moves the wheel up to the given time and runs every expired task on the calling thread,
+     * outside of the wheel lock so tasks may schedule new timeouts.
+     */
+    public void advance(long nowMillis) {
+        List<Timeout> expired = new ArrayList<>();
+        synchronized (this) {
+            long targetTick = nowMillis / tickMillis;
+            while (currentTick < targetTick) {
+                currentTick++;
+                for (int level = 1; level <= LEVELS; level++) {
+                    if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) != 0) {
+                        break;
+                    }
+                    cascade(level == LEVELS ? overflow
+                            : wheels[level][(int) (currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK]);
+                }
+                Bucket bucket = wheels[0][(int) currentTick & WHEEL_MASK];
+                for (Timeout timeout = bucket.poll(); timeout != null; timeout = bucket.poll()) {
+                    expired.add(timeout);
+                }
+            }
+            pending -= expired.size();
+        }
+        for (Timeout timeout : expired) {
+            timeout.task.run();
+        }
+    }
+
+    // the bucket is emptied first, deadlines still beyond the last level go back into the overflow bucket
+    private void cascade(Bucket bucket) {
+        List<Timeout> timeouts = new ArrayList<>();
+        for (Timeout timeout = bucket.poll(); timeout != null; timeout = bucket.poll()) {
+            timeouts.add(timeout);
+        }
+        for (Timeout timeout : timeouts) {
+            place(timeout);
+        }
+    }
+
+    public synchronized int size() {
+        return pending;
+    }
+
+    /**
+     * Drives the wheel from the given scheduler with one periodic task.
+     */
+    public synchronized void start(ScheduledExecutorService scheduler) {
+        if (driver == null) {
+            driver = scheduler.scheduleAtFixedRate(() -> advance(System.currentTimeMillis()), tickMillis, tickMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized void stop() {
+        if (driver != null) {
+            driver.cancel(false);
+            driver = null;
+        }
+    }
+
+    public class Timeout {
+        private final long deadlineTick;
+        private final Runnable task;
+        private Timeout prev, next;
+        private Bucket bucket;
+
+        private Timeout(long deadlineTick, Runnable task) {
+            this.deadlineTick = deadlineTick;
+            this.task = task;
+        }
+
+        public long getDeadlineMillis() {
+            return deadlineTick * tickMillis;
+        }
+
+        /**
+         * Removes the timeout from the wheel, returns false if it already fired or was cancelled.
+         */
+        public boolean cancel() {
+            synchronized (TimingWheel.this) {
+                if (bucket == null) {
+                    return false;
+                }
+                bucket.remove(this);
+                pending--;
+                return true;
+            }
+        }
+    }
+
+    // intrusive doubly-linked list of timeouts
+    private static class Bucket {
+        private Timeout head, tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.prev = timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        Timeout poll() {
+            Timeout timeout = head;
+            if (timeout != null) {
+                remove(timeout);
+            }
+            return timeout;
+        }
+    }
+}